@@ -1,5 +1,6 @@
 package es.urjc.etsii.grafo.PSSC;
 
+import es.urjc.etsii.grafo.PSSC.experiments.ImporterBenchmark;
 import es.urjc.etsii.grafo.PSSC.model.*;
 import es.urjc.etsii.grafo.PSSC.model.neigh.PSSCBaseMove;
 import es.urjc.etsii.grafo.solution.Objective;
@@ -18,6 +19,7 @@ public class Main {
     public static void main(String[] args) {
         if (args.length > 0 && args[0].equals("help")) {
             System.out.println("Usage to validate a file: java -jar PSSC.jar validate path/to/instance.txt path/to/solution.txt");
+            System.out.println("Usage to benchmark instance parsing: java -jar PSSC.jar bench-import [path/to/instances]");
             System.out.println("Usage to start solver: java -jar PSSC.jar");
         } else if (args.length > 0 && args[0].equals("validate")) {
             if(args.length != 3) {
@@ -25,6 +27,13 @@ public class Main {
                 return;
             }
             validate(args[1], args[2]);
+        } else if (args.length > 0 && args[0].equals("bench-import")) {
+            var folder = Path.of(args.length > 1 ? args[1] : "instances");
+            try {
+                ImporterBenchmark.run(folder);
+            } catch (IOException e) {
+                System.out.println("Error reading instances: " + e.getMessage());
+            }
         } else {
             // start solver engine
             Mork.start(args, OBJECTIVE);
@@ -33,7 +42,7 @@ public class Main {
 
     private static void validate(String instancePath, String solutionPath) {
         var validator = new PSSCSolutionValidator();
-        var instanceIO = new PSSCInstanceImporter();
+        var instanceIO = new PSSCInstanceImporter(false); // Solution files use the original set ids
         var instance = instanceIO.importInstance(instancePath);
         var solution = new PSSCSolution(instance);
         try (Scanner sc = new Scanner(Path.of(solutionPath))){
@@ -0,0 +1,157 @@
+package es.urjc.etsii.grafo.PSSC.algorithms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a k level is worth searching further, from the trajectory of its coverage gap.
+ * <p>
+ * After each shake the remaining gap to the required coverage is recorded. Over the last shakes, the chance that a shake
+ * closes part of the gap and the mean amount it closes are estimated. Improvements are then taken as Poisson arrivals
+ * over the horizon, one full shake ladder since each improvement restarts it, and the level is abandoned when the chance
+ * of enough of them to close the whole gap falls below the threshold. The estimate is optimistic, with a Laplace prior
+ * on the improvement rate and the mean amount of the whole level when the last shakes closed nothing, so that a slowing
+ * trend is needed to abandon a level.
+ * <p>
+ * An abandoned level counts as a failure of its k, so the rule only shortens a run: the k-thinning loop reacts as to any
+ * other failure, and the time the level did not use is not given to another k.
+ * <p>
+ * Every abandonment is logged with its evidence, so that false negatives can be audited.
+ * Used by a single thread, one instance for each level.
+ */
+public final class CoverageGapTrend {
+
+    private static final Logger log = LoggerFactory.getLogger(CoverageGapTrend.class);
+
+    /**
+     * When a level is abandoned
+     * @param minChance predicted chance of closing the gap below which the level is abandoned, 0 to never abandon
+     * @param window number of recent shakes used to estimate the improvement rate and amount
+     * @param minShakes shakes before the first decision
+     */
+    public record Rule(double minChance, int window, int minShakes) {
+        public Rule {
+            if (minChance < 0 || minChance >= 1) {
+                throw new IllegalArgumentException("minChance must be in [0, 1), got " + minChance);
+            }
+            if (window <= 0 || minShakes < 0) {
+                throw new IllegalArgumentException("window must be positive and minShakes not negative, got window=" + window + ", minShakes=" + minShakes);
+            }
+        }
+
+        /**
+         * Never abandon a level
+         */
+        public static Rule disabled() {
+            return new Rule(0, 1, 0);
+        }
+
+        /**
+         * Abandon a level with less than a 5% chance of closing its gap, judging by its last 50 shakes
+         */
+        public static Rule standard() {
+            return new Rule(0.05, 50, 20);
+        }
+
+        private boolean isEnabled() {
+            return minChance > 0;
+        }
+    }
+
+    private final Rule rule;
+    private final int k;
+    private final int horizon;
+    // Gap closed by each of the last shakes, 0 when it did not improve, as a circular buffer
+    private final int[] closed;
+    private int shakes;
+    private int gap;
+    private int totalClosed;
+    private int totalImprovements;
+
+    /**
+     * Start following a level
+     * @param rule when to abandon the level
+     * @param k number of sets of the level
+     * @param horizon shakes left to close the gap, the length of the shake ladder
+     * @param gap weight still to be covered after the first local search
+     */
+    public CoverageGapTrend(Rule rule, int k, int horizon, int gap) {
+        this.rule = rule;
+        this.k = k;
+        this.horizon = horizon;
+        this.closed = new int[rule.window()];
+        this.gap = gap;
+    }
+
+    /**
+     * Record the best gap after a shake and its local search
+     * @param bestGap weight still to be covered by the best solution of the level
+     */
+    public void record(int bestGap) {
+        int delta = Math.max(0, gap - bestGap);
+        closed[shakes % closed.length] = delta;
+        shakes++;
+        if (delta > 0) {
+            totalClosed += delta;
+            totalImprovements++;
+            gap = bestGap;
+        }
+    }
+
+    /**
+     * Whether the level should be abandoned, logging the decision and its evidence if so
+     * @return true if the predicted chance of closing the gap is below the threshold
+     */
+    public boolean shouldAbandon() {
+        if (!rule.isEnabled() || gap <= 0 || shakes < rule.minShakes()) {
+            return false;
+        }
+        int observed = Math.min(shakes, closed.length);
+        int improvements = 0;
+        int windowClosed = 0;
+        for (int i = 0; i < observed; i++) {
+            if (closed[i] > 0) {
+                improvements++;
+                windowClosed += closed[i];
+            }
+        }
+        double rate = (improvements + 1) / (double) (observed + 2);
+        double meanClosed;
+        if (improvements > 0) {
+            meanClosed = windowClosed / (double) improvements;
+        } else if (totalImprovements > 0) {
+            meanClosed = totalClosed / (double) totalImprovements;
+        } else {
+            meanClosed = gap;
+        }
+        int needed = (int) Math.ceil(gap / meanClosed);
+        double expected = rate * horizon;
+        double chance = atLeast(needed, expected);
+        if (chance >= rule.minChance()) {
+            return false;
+        }
+        log.info("k={} abandoned: gap {} after {} shakes, {} improvements closing {} in the last {}, rate {}, mean closed {}, "
+                        + "{} improvements needed, {} expected in {} shakes, chance {} < {}",
+                k, gap, shakes, improvements, windowClosed, observed, String.format("%.3f", rate), String.format("%.1f", meanClosed),
+                needed, String.format("%.2f", expected), horizon, String.format("%.4f", chance), rule.minChance());
+        return true;
+    }
+
+    /**
+     * Probability that a Poisson variable is at least n, summing the terms below n in log space to avoid underflow
+     * @param n number of arrivals
+     * @param lambda expected number of arrivals
+     */
+    private static double atLeast(int n, double lambda) {
+        if (n <= 0) {
+            return 1;
+        }
+        double logTerm = -lambda;
+        double below = Math.exp(logTerm);
+        for (int i = 1; i < n; i++) {
+            logTerm += Math.log(lambda) - Math.log(i);
+            below += Math.exp(logTerm);
+        }
+        return Math.max(0, 1 - below);
+    }
+}
@@ -0,0 +1,270 @@
+package es.urjc.etsii.grafo.PSSC.algorithms;
+
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Level;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Outcome;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Phase;
+import es.urjc.etsii.grafo.PSSC.constructives.GainBucketQueue;
+import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.neigh.Swap11GainMatrix;
+import es.urjc.etsii.grafo.PSSC.model.neigh.Swap22Neighborhood;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+import java.util.random.RandomGenerator;
+
+/**
+ * The inner VNS of the k-thinning loop, maximizing the coverage of a solution of fixed size k (MSKCP),
+ * shared by {@link VnsPscp} and the workers of {@link PortfolioVnsPscp}.
+ * <p>
+ * Each shake removes the l most redundant sets and adds l new ones, followed by the local search. The shake strength l
+ * grows after each failed shake and is reset after each improvement, until it exceeds lMax percent of k.
+ * The time of each phase is accounted in the level, and the search stops when the level is over, its coverage gap
+ * stops closing or is not expected to close, see {@link TimeBudgetScheduler} and {@link CoverageGapTrend}.
+ * <p>
+ * Without a random source the search is deterministic: ties are broken by set order and the repair is greedy.
+ * With one, ties are broken at random, and each repaired set is chosen at random among the rclSize best ones.
+ * Safe to use from several threads if no random source is given, otherwise each thread needs its own instance.
+ */
+final class FixedKVns {
+
+    private final int lMax;
+    private final VnsPscp.LocalSearch localSearch;
+    private final int rclSize;
+    private final CoverageGapTrend.Rule abandonRule;
+    private final Swap22Neighborhood swap22;
+    private final PointWeightingLocalSearch pointWeighting;
+    private final RandomGenerator random;
+
+    /**
+     * @param lMax maximum shake strength as a percentage of the solution size k
+     * @param localSearch local search applied after each shake
+     * @param rclSize number of best sets each repaired set is chosen from, 1 for a greedy repair
+     * @param abandonRule when a k is abandoned because its coverage gap is not expected to close
+     * @param swap22 (2,2)-swap neighborhood used by the VND
+     * @param pointWeighting point weighting search, may be shared between instances
+     * @param random random source for ties and the repair, or null for a deterministic search
+     */
+    FixedKVns(int lMax, VnsPscp.LocalSearch localSearch, int rclSize, CoverageGapTrend.Rule abandonRule,
+              Swap22Neighborhood swap22, PointWeightingLocalSearch pointWeighting, RandomGenerator random) {
+        if (rclSize > 1 && random == null) {
+            throw new IllegalArgumentException("A randomized repair needs a random source");
+        }
+        this.lMax = lMax;
+        this.localSearch = localSearch;
+        this.rclSize = rclSize;
+        this.abandonRule = abandonRule;
+        this.swap22 = swap22;
+        this.pointWeighting = pointWeighting;
+        this.random = random;
+    }
+
+    /**
+     * Maximize the coverage keeping the number of chosen sets. With the point weighting search, stops as soon as the solution is feasible.
+     * @param initialSolution solution of size k, modified in place
+     * @param level time budget of this k, the search stops when it is over, the coverage gap stops closing
+     *              or it is not expected to close, in which case the level is marked as abandoned
+     * @param stop checked after each shake and during the local search, to abandon a k that is no longer needed
+     * @return the best solution found
+     */
+    PSSCSolution solve(PSSCSolution initialSolution, Level level, BooleanSupplier stop) {
+        return solve(initialSolution, level, stop, UnaryOperator.identity());
+    }
+
+    /**
+     * Same as {@link #solve(PSSCSolution, Level, BooleanSupplier)}, exchanging the best solution after each shake
+     * @param migrate receives the best solution of size k after each shake, between checkpoints, and returns the one
+     *                to continue from, either the same one or a better solution of size k owned by the caller
+     */
+    PSSCSolution solve(PSSCSolution initialSolution, Level level, BooleanSupplier stop, UnaryOperator<PSSCSolution> migrate) {
+        BooleanSupplier halt = () -> stop.getAsBoolean() || level.isOver();
+        PSSCSolution currentBestForK = runLocalSearch(initialSolution, level, halt);
+        level.reportGap(currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
+        int k = initialSolution.getChosenSets().size();
+        int l_max_k = Math.max(1, (k * lMax) / 100);
+        int l = 1;
+        var trend = new CoverageGapTrend(abandonRule, k, l_max_k, currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
+
+        // The outer loop only needs a feasible solution of size k, the point weighting search does not spend time on more coverage
+        boolean stopWhenCovered = localSearch == VnsPscp.LocalSearch.POINT_WEIGHTING;
+        while (l <= l_max_k && !(stopWhenCovered && currentBestForK.isCovered()) && !stop.getAsBoolean() && !level.isOver() && !level.isStalled()) {
+            // Shake and improve in place, undoing the changes if they do not improve coverage
+            int bestCovered = currentBestForK.getCoveredCount();
+            int checkpoint = currentBestForK.checkpoint();
+            long start = System.nanoTime();
+            PSSCSolution shakenSolution = shake(currentBestForK, l);
+            level.record(Phase.SHAKE, System.nanoTime() - start);
+            PSSCSolution improvedSolution = runLocalSearch(shakenSolution, level, halt);
+
+            if (improvedSolution.getCoveredCount() > bestCovered) {
+                currentBestForK.commit(checkpoint);
+                l = 1;
+            } else {
+                currentBestForK.rollback(checkpoint);
+                l++;
+            }
+
+            var migrated = migrate.apply(currentBestForK);
+            if (migrated != currentBestForK) {
+                currentBestForK = migrated;
+                l = 1;
+            }
+            level.reportGap(currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
+
+            trend.record(currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
+            if (trend.shouldAbandon()) {
+                level.abandon();
+                break;
+            }
+        }
+        return currentBestForK;
+    }
+
+    /**
+     * Drop the chosen sets with the smallest unique coverage one at a time until k remain,
+     * ties broken by set order, or at random with a random source
+     * @param solution solution to shrink, modified in place
+     * @param k number of sets to keep
+     */
+    void dropLeastUseful(PSSCSolution solution, int k) {
+        int[] uniqueCoverage = solution.getUniqueCoverage();
+        while (solution.getChosenSets().size() > k) {
+            int leastUseful = -1;
+            int ties = 0;
+            for (int set : solution.getChosenSets()) {
+                if (leastUseful == -1 || uniqueCoverage[set] < uniqueCoverage[leastUseful]) {
+                    leastUseful = set;
+                    ties = 1;
+                } else if (random != null && uniqueCoverage[set] == uniqueCoverage[leastUseful] && random.nextInt(++ties) == 0) {
+                    leastUseful = set;
+                }
+            }
+            solution.removeSet(leastUseful);
+        }
+    }
+
+    /**
+     * How a level finished, checked right after its search returns
+     * @param cancelled true if the search was stopped because its result was no longer needed
+     */
+    static Outcome outcome(PSSCSolution solution, Level level, boolean cancelled) {
+        if (solution.isCovered()) {
+            return Outcome.FEASIBLE;
+        }
+        if (cancelled || level.isTimeUp()) {
+            return Outcome.CANCELLED;
+        }
+        if (level.isOver() || level.isStalled() || level.isAbandoned()) {
+            return Outcome.ABANDONED;
+        }
+        return Outcome.INFEASIBLE;
+    }
+
+    /**
+     * @param halt true once the level is over or the caller no longer needs this k, checked inside the neighborhoods
+     */
+    private PSSCSolution runLocalSearch(PSSCSolution solution, Level level, BooleanSupplier halt) {
+        return switch (localSearch) {
+            case VND -> runLocalSearch_VND(solution, level, halt);
+            case POINT_WEIGHTING -> {
+                long start = System.nanoTime();
+                var improved = pointWeighting.improve(solution, halt);
+                level.record(Phase.POINT_WEIGHTING, System.nanoTime() - start);
+                yield improved;
+            }
+        };
+    }
+
+    /**
+     * A responsive Variable Neighborhood Descent (VND) local search.
+     * It prioritizes fast (1,1)-swaps and only attempts the expensive (2,2)-swaps
+     * when no simpler improvements can be found, and there is time left in the level for them.
+     */
+    private PSSCSolution runLocalSearch_VND(PSSCSolution solution, Level level, BooleanSupplier halt) {
+        // Swap deltas are kept between 1-1 swaps, and rebuilt after any other move
+        var swap11 = new Swap11GainMatrix(solution);
+        while (!halt.getAsBoolean()) {
+            // Phase 1: Try the fast (1,1)-swap with a "best improvement" strategy.
+            long start = System.nanoTime();
+            boolean improved11 = swap11.findBest();
+            if (improved11) {
+                swap11.swap(swap11.bestOut(), swap11.bestIn());
+            }
+            level.record(Phase.SWAP11, System.nanoTime() - start);
+            if (improved11) {
+                continue; // Improvement found, restart the VND to prioritize 1-1 swaps again.
+            }
+
+            // Phase 2: If no 1-1 swaps worked, try the expensive (2,2)-swap with a "first improvement" strategy.
+            if (!level.canAfford(Phase.SWAP22)) {
+                break; // Not expected to finish before the level deadline
+            }
+            start = System.nanoTime();
+            Optional<Swap22Neighborhood.Swap22Move> first22Move = swap22.findFirstImprovingMove(solution, halt);
+            level.record(Phase.SWAP22, System.nanoTime() - start);
+
+            if (first22Move.isPresent()) {
+                // The move is guaranteed to be improving because the method checks for it.
+                solution = first22Move.get().execute(solution);
+                continue; // Improvement found, restart the VND.
+            }
+
+            // If we reach here, neither neighborhood found an improvement. The solution is a local optimum.
+            break;
+        }
+        return solution;
+    }
+
+    /**
+     * Shake via Guided Destroy/Repair. Removes the 'l' most redundant sets and adds 'l' new ones.
+     */
+    private PSSCSolution shake(PSSCSolution solution, int l) {
+        int k = solution.getChosenSets().size();
+        if (k == 0 || l == 0) return solution;
+
+        // GUIDED DESTROY
+        List<Candidate> setsToScore = new ArrayList<>();
+        int[] coverCount = solution.getCoverCount();
+
+        for (int set : solution.getChosenSets()) {
+            int redundancyScore = 0;
+            for (int point : solution.getInstance().getCoveredPoints(set)) {
+                redundancyScore += coverCount[point];
+            }
+            setsToScore.add(new Candidate(set, redundancyScore, random == null ? 0 : random.nextInt()));
+        }
+        setsToScore.sort(Comparator.comparingInt(Candidate::score).reversed().thenComparingInt(Candidate::tieBreak));
+
+        int nToRemove = Math.min(l, setsToScore.size());
+        for (int i = 0; i < nToRemove; i++) {
+            solution.removeSet(setsToScore.get(i).id());
+        }
+
+        // REPAIR, greedy or choosing each set among the best ones
+        if (rclSize == 1) {
+            PSSCGreedyConstructive.addNBestGreedySets(solution, nToRemove);
+        } else {
+            int[] rcl = new int[rclSize];
+            var candidates = new GainBucketQueue(solution);
+            for (int i = 0; i < nToRemove; i++) {
+                int stopIndex = candidates.best(rcl, rclSize);
+                if (stopIndex == 0) {
+                    break; // No more sets can be added
+                }
+                candidates.addSet(rcl[random.nextInt(stopIndex)]);
+            }
+        }
+
+        solution.notifyUpdate();
+        return solution;
+    }
+
+    /**
+     * @param tieBreak order between sets with the same score, 0 for all of them in a deterministic search
+     */
+    private record Candidate(int id, int score, int tieBreak) {}
+}
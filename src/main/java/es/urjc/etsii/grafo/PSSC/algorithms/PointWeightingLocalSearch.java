@@ -0,0 +1,394 @@
+package es.urjc.etsii.grafo.PSSC.algorithms;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.util.TimeControl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Weighted point local search for the fixed k subproblem (MSKCP), maximizing the covered weight with exactly k sets.
+ * <p>
+ * Each step swaps one set: the chosen set that loses the least is removed, then the unchosen set that gains the most is added.
+ * Scores use dynamic point weights, increased by one for every point left uncovered after a step, so points that stay
+ * uncovered become more attractive and the search escapes local optima without restarts or perturbations.
+ * <p>
+ * Configuration checking prevents cycling: a removed set cannot be added again until one of its points
+ * changes between covered and uncovered. Ties are broken by the set changed the longest time ago.
+ * <p>
+ * Scores are updated in O(1) for each set covering a point whose cover count changes. The unchosen sets with a positive
+ * score, those covering an uncovered point, are kept in a sparse set, so each step costs a pass over them plus the degree
+ * of the points of the swapped sets and of the uncovered points. The search works on its own arrays, and only the best
+ * configuration found is written back to the solution.
+ */
+public final class PointWeightingLocalSearch {
+
+    private static final int NONE = -1;
+
+    private final int maxStepsWithoutImprovement;
+
+    // Shared by every call, which may run concurrently on different solutions
+    private final LongAdder totalSteps = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * @param maxStepsWithoutImprovement steps without improving the best covered weight before giving up
+     */
+    public PointWeightingLocalSearch(int maxStepsWithoutImprovement) {
+        if (maxStepsWithoutImprovement <= 0) {
+            throw new IllegalArgumentException("maxStepsWithoutImprovement must be positive, got " + maxStepsWithoutImprovement);
+        }
+        this.maxStepsWithoutImprovement = maxStepsWithoutImprovement;
+    }
+
+    /**
+     * Search for the best coverage keeping the number of chosen sets. Stops when the solution becomes feasible,
+     * when the best coverage does not improve for the configured number of steps, or when time is up.
+     * @param solution solution to improve, modified in place
+     * @return the same solution, containing the best configuration found
+     */
+    public PSSCSolution improve(PSSCSolution solution) {
+        return improve(solution, () -> false);
+    }
+
+    /**
+     * Same as {@link #improve(PSSCSolution)}, also stopping when the given condition holds, checked before each step
+     * @param solution solution to improve, modified in place
+     * @param stop condition to stop early, for example the deadline of the caller
+     * @return the same solution, containing the best configuration found
+     */
+    public PSSCSolution improve(PSSCSolution solution, BooleanSupplier stop) {
+        long start = System.nanoTime();
+        var search = new Search(solution, stop);
+        search.run();
+        search.writeBest();
+        totalSteps.add(search.step);
+        totalNanos.add(System.nanoTime() - start);
+        return solution;
+    }
+
+    /**
+     * @return steps done by every call to {@link #improve(PSSCSolution)} since this object was created
+     */
+    public long getTotalSteps() {
+        return totalSteps.sum();
+    }
+
+    /**
+     * @return average number of steps per second of a single search, adding up the time of concurrent calls, 0 if nothing has been run yet
+     */
+    public double getStepsPerSecond() {
+        long nanos = totalNanos.sum();
+        return nanos == 0 ? 0 : totalSteps.sum() * 1e9 / nanos;
+    }
+
+    private final class Search {
+        private final PSSCSolution solution;
+        private final BooleanSupplier stop;
+        private final PSSCInstance instance;
+        private final int[] setOffsets, setPoints, pointOffsets, pointSets, pointWeights;
+
+        private final boolean[] chosen;
+        private final boolean[] useless;
+        private final int[] chosenList;
+        private final int[] chosenIndex;
+        private final int[] coverCount;
+        /**
+         * Sum of the ids of the chosen sets covering each point, the only one if the point is covered once
+         */
+        private final long[] coverSum;
+        /**
+         * Dynamic weight of each point
+         */
+        private final long[] weight;
+        /**
+         * Unchosen sets: dynamic weight of their uncovered points. Chosen sets: minus the dynamic weight of the points only they cover.
+         */
+        private final long[] score;
+        private final boolean[] conf;
+        private final long[] lastChange;
+
+        // Unchosen sets that are not useless and have a positive score, as a sparse set. The only ones worth adding.
+        private final int[] candidates;
+        private final int[] candidateIndex;
+        private int nCandidates;
+
+        // Uncovered points, as a sparse set
+        private final int[] uncovered;
+        private final int[] uncoveredIndex;
+        private int nUncovered;
+        private int uncoveredWeight;
+        private int freeSlot;
+
+        private final int minCovered;
+        private final int totalWeight;
+        private int bestUncoveredWeight;
+        private final int[] best;
+        private long step;
+
+        private Search(PSSCSolution solution, BooleanSupplier stop) {
+            this.solution = solution;
+            this.stop = stop;
+            this.instance = solution.getInstance();
+            this.setOffsets = instance.getSetOffsets();
+            this.setPoints = instance.getSetPoints();
+            this.pointOffsets = instance.getPointOffsets();
+            this.pointSets = instance.getPointSets();
+            this.pointWeights = instance.getPointWeights();
+            int nSets = instance.getnSets();
+            int nPoints = instance.getnPoints();
+
+            this.chosen = new boolean[nSets];
+            this.useless = new boolean[nSets];
+            for (int set : instance.getUselessSets()) {
+                useless[set] = true;
+            }
+            int k = solution.getChosenSets().size();
+            this.chosenList = new int[k];
+            this.chosenIndex = new int[nSets];
+            this.coverCount = new int[nPoints];
+            this.coverSum = new long[nPoints];
+            this.weight = new long[nPoints];
+            this.score = new long[nSets];
+            this.conf = new boolean[nSets];
+            Arrays.fill(conf, true);
+            this.lastChange = new long[nSets];
+            this.uncovered = new int[nPoints];
+            this.uncoveredIndex = new int[nPoints];
+            this.candidates = new int[nSets];
+            this.candidateIndex = new int[nSets];
+            Arrays.fill(candidateIndex, NONE);
+            this.best = new int[k];
+
+            int n = 0;
+            for (int set : solution.getChosenSets()) {
+                chosen[set] = true;
+                chosenIndex[set] = n;
+                chosenList[n++] = set;
+                for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                    coverCount[setPoints[i]]++;
+                    coverSum[setPoints[i]] += set;
+                }
+            }
+            int total = 0;
+            for (int p = 0; p < nPoints; p++) {
+                weight[p] = pointWeights[p];
+                total += pointWeights[p];
+                if (coverCount[p] == 0) {
+                    addUncovered(p);
+                    for (int j = pointOffsets[p]; j < pointOffsets[p + 1]; j++) {
+                        score[pointSets[j]] += weight[p];
+                    }
+                } else if (coverCount[p] == 1) {
+                    score[(int) coverSum[p]] -= weight[p];
+                }
+            }
+            for (int set = 0; set < nSets; set++) {
+                updateCandidate(set);
+            }
+            this.totalWeight = total;
+            this.minCovered = solution.minCoveredRequired();
+            this.bestUncoveredWeight = uncoveredWeight;
+            System.arraycopy(chosenList, 0, best, 0, k);
+        }
+
+        private void run() {
+            int k = chosenList.length;
+            long lastImprovement = 0;
+            int lastAdded = NONE;
+            while (k > 0 && nUncovered > 0 && totalWeight - bestUncoveredWeight < minCovered
+                    && step - lastImprovement < maxStepsWithoutImprovement && !TimeControl.isTimeUp() && !stop.getAsBoolean()) {
+                step++;
+                int setOut = selectRemove(lastAdded);
+                remove(setOut);
+                conf[setOut] = false;
+                int setIn = selectAdd();
+                if (setIn == NONE) {
+                    // Every other set is chosen or useless, nothing to swap
+                    add(setOut);
+                    break;
+                }
+                add(setIn);
+                // Points covered again by setIn must not allow undoing the swap right away
+                conf[setOut] = false;
+                lastAdded = setIn;
+
+                if (uncoveredWeight < bestUncoveredWeight) {
+                    bestUncoveredWeight = uncoveredWeight;
+                    System.arraycopy(chosenList, 0, best, 0, k);
+                    lastImprovement = step;
+                }
+                // Points still uncovered weigh more, which raises the score of every set covering them, all of them candidates
+                for (int u = 0; u < nUncovered; u++) {
+                    int point = uncovered[u];
+                    weight[point]++;
+                    for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                        score[pointSets[j]]++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Chosen set losing the least dynamic weight, other than the one just added unless it is the only one
+         */
+        private int selectRemove(int lastAdded) {
+            int bestSet = NONE;
+            for (int set : chosenList) {
+                if (set != lastAdded && (bestSet == NONE || isBetter(set, bestSet))) {
+                    bestSet = set;
+                }
+            }
+            return bestSet == NONE ? lastAdded : bestSet;
+        }
+
+        /**
+         * Unchosen set with the best score, among those allowed by configuration checking if any
+         */
+        private int selectAdd() {
+            int bestAllowed = NONE;
+            for (int c = 0; c < nCandidates; c++) {
+                int set = candidates[c];
+                if (conf[set] && (bestAllowed == NONE || isBetter(set, bestAllowed))) {
+                    bestAllowed = set;
+                }
+            }
+            // Every candidate is forbidden or there is none, an allowed set gaining nothing may still be chosen
+            return bestAllowed != NONE ? bestAllowed : selectAddAmongAll();
+        }
+
+        /**
+         * Same as {@link #selectAdd()}, scanning every set
+         */
+        private int selectAddAmongAll() {
+            int bestAllowed = NONE, bestAny = NONE;
+            for (int set = 0; set < score.length; set++) {
+                if (chosen[set] || useless[set]) {
+                    continue;
+                }
+                if (bestAny == NONE || isBetter(set, bestAny)) {
+                    bestAny = set;
+                }
+                if (conf[set] && (bestAllowed == NONE || isBetter(set, bestAllowed))) {
+                    bestAllowed = set;
+                }
+            }
+            return bestAllowed != NONE ? bestAllowed : bestAny;
+        }
+
+        private boolean isBetter(int set, int other) {
+            return score[set] > score[other] || score[set] == score[other] && lastChange[set] < lastChange[other];
+        }
+
+        /**
+         * Insert or delete a set from the candidates after its score or state changes
+         */
+        private void updateCandidate(int set) {
+            boolean candidate = !chosen[set] && !useless[set] && score[set] > 0;
+            if (candidate && candidateIndex[set] == NONE) {
+                candidateIndex[set] = nCandidates;
+                candidates[nCandidates++] = set;
+            } else if (!candidate && candidateIndex[set] != NONE) {
+                int last = candidates[--nCandidates];
+                candidates[candidateIndex[set]] = last;
+                candidateIndex[last] = candidateIndex[set];
+                candidateIndex[set] = NONE;
+            }
+        }
+
+        private void add(int set) {
+            chosen[set] = true;
+            updateCandidate(set);
+            chosenIndex[set] = freeSlot;
+            chosenList[freeSlot] = set;
+            lastChange[set] = step;
+            // Rebuilt below as minus the weight of the points only this set will cover
+            score[set] = 0;
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                int point = setPoints[i];
+                int count = ++coverCount[point];
+                coverSum[point] += set;
+                if (count == 1) {
+                    removeUncovered(point);
+                    for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                        int other = pointSets[j];
+                        score[other] -= weight[point];
+                        conf[other] = true;
+                        updateCandidate(other);
+                    }
+                } else if (count == 2) {
+                    // The previous sole cover no longer loses this point when removed
+                    score[(int) (coverSum[point] - set)] += weight[point];
+                }
+            }
+        }
+
+        private void remove(int set) {
+            chosen[set] = false;
+            freeSlot = chosenIndex[set];
+            lastChange[set] = step;
+            // Rebuilt below as the weight of the points this set leaves uncovered, it covered every other point
+            score[set] = 0;
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                int point = setPoints[i];
+                int count = --coverCount[point];
+                coverSum[point] -= set;
+                if (count == 0) {
+                    addUncovered(point);
+                    for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                        int other = pointSets[j];
+                        score[other] += weight[point];
+                        conf[other] = true;
+                        updateCandidate(other);
+                    }
+                } else if (count == 1) {
+                    // The remaining cover now loses this point when removed
+                    score[(int) coverSum[point]] -= weight[point];
+                }
+            }
+            updateCandidate(set);
+        }
+
+        private void addUncovered(int point) {
+            uncoveredIndex[point] = nUncovered;
+            uncovered[nUncovered++] = point;
+            uncoveredWeight += pointWeights[point];
+        }
+
+        private void removeUncovered(int point) {
+            int last = uncovered[--nUncovered];
+            uncovered[uncoveredIndex[point]] = last;
+            uncoveredIndex[last] = uncoveredIndex[point];
+            uncoveredWeight -= pointWeights[point];
+        }
+
+        /**
+         * Write the best configuration found back to the solution
+         */
+        private void writeBest() {
+            int[] current = solution.getChosenSets().stream().mapToInt(Integer::intValue).toArray();
+            Arrays.fill(chosen, false);
+            for (int set : best) {
+                chosen[set] = true;
+            }
+            boolean changed = false;
+            for (int set : current) {
+                if (!chosen[set]) {
+                    solution.removeSet(set);
+                    changed = true;
+                }
+            }
+            for (int set : best) {
+                if (!solution.getChosenSets().contains(set)) {
+                    solution.addSet(set);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                solution.notifyUpdate();
+            }
+        }
+    }
+}
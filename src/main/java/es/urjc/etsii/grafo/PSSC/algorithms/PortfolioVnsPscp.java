@@ -0,0 +1,414 @@
+package es.urjc.etsii.grafo.PSSC.algorithms;
+
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Budget;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Phase;
+import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.neigh.Swap22Neighborhood;
+import es.urjc.etsii.grafo.algorithms.Algorithm;
+import es.urjc.etsii.grafo.util.random.RandomManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Portfolio of independent VNS-PSCP workers solving the same instance on separate threads, intended for single instance
+ * runs with the parallel executor disabled.
+ * <p>
+ * Every worker runs the k-thinning loop of {@link VnsPscp} with a warm start, always targeting one set less than the best
+ * feasible solution found by any of them, and solving each k with the same inner VNS, see {@link FixedKVns}.
+ * The incumbent is shared through an atomic reference, so when a worker finds a feasible solution the others abandon
+ * their current k and move to the new target, warm starting from it. Workers differ in their random stream,
+ * shake strength, local search and restricted candidate list size, see {@link WorkerConfig}.
+ * <p>
+ * A worker failing at the current target waits for another one to succeed, and the run ends when every worker has failed
+ * at the same k, or at the time limit. As a failure can end the run, each k may use all the remaining time, see
+ * {@link TimeBudgetScheduler#startOpenLevel(int)}. Optionally, workers periodically publish their best solution for the current k
+ * and adopt the best one published by any of them if it covers more.
+ * <p>
+ * Each worker draws from its own stream, seeded from {@link RandomManager} on the calling thread, so the streams are
+ * reproducible. The interleaving of the workers is not, so neither are the results of a run.
+ */
+public class PortfolioVnsPscp extends Algorithm<PSSCSolution, PSSCInstance> {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioVnsPscp.class);
+
+    private static final long POLL_MILLIS = 20;
+
+    /**
+     * Steps without improvement before the point weighting search gives up.
+     */
+    private static final int POINT_WEIGHTING_MAX_STAGNATION = 5000;
+
+    /**
+     * How a worker searches
+     * @param lMax maximum shake strength as a percentage of the solution size k
+     * @param localSearch local search applied after each shake
+     * @param rclSize number of best sets the shake repair chooses from at random, 1 for a greedy repair
+     */
+    public record WorkerConfig(int lMax, VnsPscp.LocalSearch localSearch, int rclSize) {
+        public WorkerConfig {
+            if (lMax <= 0 || rclSize <= 0) {
+                throw new IllegalArgumentException("lMax and rclSize must be positive, got lMax=" + lMax + ", rclSize=" + rclSize);
+            }
+            Objects.requireNonNull(localSearch);
+        }
+    }
+
+    /**
+     * Components of the portfolio. Start from {@link #defaults(int)} and change what is needed with the with methods.
+     * @param workers Configuration of each worker, each one running on its own thread.
+     * @param migrationPeriod Shakes between elite migrations in each worker, 0 to disable migration.
+     * @param budget Time available for each run and share of it each k level of a worker may use, see {@link TimeBudgetScheduler}.
+     * @param abandonRule When a worker abandons a k because its coverage gap is not expected to close, see {@link CoverageGapTrend}.
+     *                    The worker then counts as failed at that k and waits, as after any other failure.
+     */
+    public record Options(List<WorkerConfig> workers, int migrationPeriod, Budget budget, CoverageGapTrend.Rule abandonRule) {
+        public Options {
+            if (workers.isEmpty()) {
+                throw new IllegalArgumentException("At least one worker is needed");
+            }
+            if (migrationPeriod < 0) {
+                throw new IllegalArgumentException("migrationPeriod cannot be negative, got " + migrationPeriod);
+            }
+            workers = List.copyOf(workers);
+            Objects.requireNonNull(budget);
+            Objects.requireNonNull(abandonRule);
+        }
+
+        /**
+         * Workers alternating shake strengths of 20%, 10% and 30%, the VND and point weighting local searches,
+         * and greedy or randomized repairs, without migration, time budget nor abandonment rule
+         * @param nWorkers Number of workers, each one running on its own thread.
+         */
+        public static Options defaults(int nWorkers) {
+            int[] lMax = {20, 10, 30};
+            var localSearches = VnsPscp.LocalSearch.values();
+            var configs = new ArrayList<WorkerConfig>();
+            for (int i = 0; i < nWorkers; i++) {
+                configs.add(new WorkerConfig(lMax[i % lMax.length], localSearches[i % localSearches.length], i % 2 == 0 ? 1 : 3));
+            }
+            return new Options(configs, 0, Budget.unlimited(), CoverageGapTrend.Rule.disabled());
+        }
+
+        public Options withWorkers(List<WorkerConfig> workers) {
+            return new Options(workers, migrationPeriod, budget, abandonRule);
+        }
+
+        public Options withMigrationPeriod(int migrationPeriod) {
+            return new Options(workers, migrationPeriod, budget, abandonRule);
+        }
+
+        public Options withBudget(Budget budget) {
+            return new Options(workers, migrationPeriod, budget, abandonRule);
+        }
+
+        public Options withAbandonRule(CoverageGapTrend.Rule abandonRule) {
+            return new Options(workers, migrationPeriod, budget, abandonRule);
+        }
+    }
+
+    /**
+     * Best feasible solution found by any worker
+     * @param k number of sets
+     * @param solution solution, never modified once published
+     */
+    private record Incumbent(int k, PSSCSolution solution) {}
+
+    /**
+     * Best solution published by any worker for a k not solved yet
+     * @param k number of sets
+     * @param covered covered weight
+     * @param solution solution, never modified once published
+     */
+    private record Elite(int k, int covered, PSSCSolution solution) {}
+
+    /**
+     * Number of workers that failed at a target k
+     */
+    private record Failures(int k, int failed) {}
+
+    private final Options options;
+
+    /**
+     * Portfolio with the default options.
+     * @param algorithmName A unique name for this algorithm instance.
+     * @param nWorkers Number of workers, each one running on its own thread.
+     */
+    public PortfolioVnsPscp(String algorithmName, int nWorkers) {
+        this(algorithmName, Options.defaults(nWorkers));
+    }
+
+    /**
+     * Portfolio choosing every component.
+     * @param algorithmName A unique name for this algorithm instance.
+     * @param options Components of the portfolio, see {@link Options}.
+     */
+    public PortfolioVnsPscp(String algorithmName, Options options) {
+        super(algorithmName);
+        this.options = options;
+    }
+
+    @Override
+    public PSSCSolution algorithm(PSSCInstance instance) {
+        PSSCSolution initialFeasibleSolution = new PSSCGreedyConstructive().construct(this.newSolution(instance));
+        if (!initialFeasibleSolution.isCovered()) {
+            log.warn("Initial greedy constructive failed to find a feasible solution for instance {}.", instance.getId());
+            return initialFeasibleSolution;
+        }
+
+        var workers = options.workers();
+        int k = initialFeasibleSolution.getChosenSets().size();
+        log.info("Initial solution found with k={}, lower bound {}. Starting {} workers.", k, instance.getSizeLowerBound(), workers.size());
+
+        var run = new Run(initialFeasibleSolution, instance.getSizeLowerBound(), new TimeBudgetScheduler(options.budget()));
+        var random = RandomManager.getRandom();
+        var executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < workers.size(); i++) {
+                var worker = new Worker(i, workers.get(i), new SplittableRandom(random.nextLong()), run);
+                futures.add(executor.submit(worker::search));
+            }
+            run.await(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PSSCSolution bestSolutionEver = run.incumbent.get().solution();
+        bestSolutionEver.setLevelReports(run.scheduler.getLevels().stream().map(TimeBudgetScheduler.LevelReport::toCsv).toList());
+        if (workers.stream().anyMatch(worker -> worker.localSearch() == VnsPscp.LocalSearch.POINT_WEIGHTING)) {
+            log.info("Point weighting search: {} steps, {} steps/s", run.pointWeighting.getTotalSteps(), String.format("%.0f", run.pointWeighting.getStepsPerSecond()));
+        }
+        log.info("Portfolio VNS-PSCP finished. {} k levels searched, best solution found with score: {}",
+                run.scheduler.getLevels().size(), bestSolutionEver.getScore());
+        return bestSolutionEver;
+    }
+
+    /**
+     * State shared by the workers of a run
+     */
+    private final class Run {
+        private final AtomicReference<Incumbent> incumbent;
+        private final AtomicReference<Elite> elite = new AtomicReference<>(new Elite(-1, -1, null));
+        private final AtomicReference<Failures> failures;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final int lowerBound;
+        private final TimeBudgetScheduler scheduler;
+        // Shared by the workers of this run only, so that its step counts are those of the run
+        private final PointWeightingLocalSearch pointWeighting = new PointWeightingLocalSearch(POINT_WEIGHTING_MAX_STAGNATION);
+
+        private Run(PSSCSolution initialSolution, int lowerBound, TimeBudgetScheduler scheduler) {
+            int k = initialSolution.getChosenSets().size();
+            this.incumbent = new AtomicReference<>(new Incumbent(k, initialSolution));
+            this.failures = new AtomicReference<>(new Failures(k - 1, 0));
+            this.lowerBound = lowerBound;
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * Publish a feasible solution if it is smaller than the incumbent, resetting the failures for the new target
+         * @param solution feasible solution, copied before publishing
+         * @return true if it became the incumbent
+         */
+        private boolean offer(PSSCSolution solution) {
+            int k = solution.getChosenSets().size();
+            Incumbent published = null;
+            while (true) {
+                var current = incumbent.get();
+                if (k >= current.k()) {
+                    return false;
+                }
+                if (published == null) {
+                    published = new Incumbent(k, solution.cloneSolution());
+                }
+                if (incumbent.compareAndSet(current, published)) {
+                    break;
+                }
+            }
+            // Targets only decrease, a failure already counted for the new target is kept
+            var reset = new Failures(k - 1, 0);
+            var current = failures.get();
+            while (current.k() > reset.k() && !failures.compareAndSet(current, reset)) {
+                current = failures.get();
+            }
+            return true;
+        }
+
+        /**
+         * Count a worker that failed at a target k, each worker fails at most once for each target
+         * @param k target the worker failed at
+         */
+        private void fail(int k) {
+            while (true) {
+                var current = failures.get();
+                if (current.k() < k) {
+                    return; // Another worker already succeeded at k
+                }
+                var updated = current.k() == k ? new Failures(k, current.failed() + 1) : new Failures(k, 1);
+                if (failures.compareAndSet(current, updated)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Publish an infeasible solution if it covers more than the elite of the same k, or the elite is for a larger k
+         * @param solution solution, copied before publishing
+         */
+        private void offerElite(PSSCSolution solution) {
+            int k = solution.getChosenSets().size();
+            int covered = solution.getCoveredCount();
+            Elite published = null;
+            while (true) {
+                var current = elite.get();
+                if ((current.k() == k && covered <= current.covered()) || (current.k() != -1 && current.k() < k)) {
+                    return;
+                }
+                if (published == null) {
+                    published = new Elite(k, covered, solution.cloneSolution());
+                }
+                if (elite.compareAndSet(current, published)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return true if the search must stop, because of the time limit or because every worker failed at the current target
+         */
+        private boolean isDone() {
+            if (cancelled.get()) {
+                return true;
+            }
+            var current = failures.get();
+            return current.failed() == options.workers().size() && current.k() == incumbent.get().k() - 1;
+        }
+
+        /**
+         * Wait for every worker, checking the time limit from this thread and cancelling them when it is exceeded
+         */
+        private void await(List<Future<?>> futures) {
+            for (int i = 0; i < futures.size(); i++) {
+                while (true) {
+                    try {
+                        futures.get(i).get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (scheduler.isTimeUp()) {
+                            cancelled.set(true);
+                        }
+                    } catch (InterruptedException e) {
+                        cancelled.set(true);
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        cancelled.set(true);
+                        throw new IllegalStateException("Worker " + i + " failed", e.getCause());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One VNS with its own configuration and random stream, running on its own thread
+     */
+    private final class Worker {
+        private final int id;
+        private final WorkerConfig config;
+        private final Run run;
+        private final FixedKVns vns;
+        private int shakes;
+
+        private Worker(int id, WorkerConfig config, SplittableRandom random, Run run) {
+            this.id = id;
+            this.config = config;
+            this.run = run;
+            this.vns = new FixedKVns(config.lMax(), config.localSearch(), config.rclSize(), options.abandonRule(),
+                    new Swap22Neighborhood(25), run.pointWeighting, random);
+        }
+
+        private void search() {
+            while (!run.isDone()) {
+                var incumbent = run.incumbent.get();
+                int k = incumbent.k() - 1;
+                if (k < run.lowerBound) {
+                    run.cancelled.set(true); // Optimal, no worker can improve it
+                    return;
+                }
+
+                var level = run.scheduler.startOpenLevel(k);
+                long start = System.nanoTime();
+                var initialSolution = incumbent.solution().cloneSolution();
+                vns.dropLeastUseful(initialSolution, k);
+                initialSolution.notifyUpdate();
+                level.record(Phase.START, System.nanoTime() - start);
+
+                var bestSolutionForK = vns.solve(initialSolution, level, () -> run.isDone() || run.incumbent.get().k() <= k,
+                        options.migrationPeriod() > 0 ? this::migrate : solution -> solution);
+                var outcome = FixedKVns.outcome(bestSolutionForK, level, run.isDone() || run.incumbent.get().k() <= k);
+                level.finish(outcome);
+
+                switch (outcome) {
+                    case FEASIBLE -> {
+                        if (run.offer(bestSolutionForK)) {
+                            log.info("Worker {} {}: success! Found a feasible solution for k={}", id, config, k);
+                        }
+                    }
+                    case INFEASIBLE, ABANDONED -> {
+                        log.info("Worker {} {}: failed to find a feasible solution for k={}. Max coverage found: {}. Waiting for other workers.",
+                                id, config, k, bestSolutionForK.getCoveredCount());
+                        run.fail(k);
+                        waitForIncumbent(k + 1);
+                    }
+                    case CANCELLED -> {
+                        // Overtaken by another worker or out of time, says nothing about k
+                    }
+                }
+            }
+        }
+
+        /**
+         * Every few shakes, publish the best solution of this worker and continue from the best published one if it covers more
+         */
+        private PSSCSolution migrate(PSSCSolution solution) {
+            if (++shakes % options.migrationPeriod() != 0) {
+                return solution;
+            }
+            run.offerElite(solution);
+            var elite = run.elite.get();
+            if (elite.k() == solution.getChosenSets().size() && elite.covered() > solution.getCoveredCount()) {
+                return elite.solution().cloneSolution();
+            }
+            return solution;
+        }
+
+        /**
+         * Wait until another worker improves the incumbent, or every worker has failed at the same target
+         * @param k size of the incumbent when this worker failed
+         */
+        private void waitForIncumbent(int k) {
+            try {
+                while (!run.isDone() && run.incumbent.get().k() >= k) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.cancelled.set(true);
+            }
+        }
+    }
+}
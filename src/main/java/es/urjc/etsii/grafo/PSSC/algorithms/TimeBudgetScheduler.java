@@ -0,0 +1,290 @@
+package es.urjc.etsii.grafo.PSSC.algorithms;
+
+import es.urjc.etsii.grafo.util.TimeControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the time of a run between the k levels of the k-thinning loop, and within each level between its phases.
+ * <p>
+ * Each level may use a share of the time left when it starts, so the time a level does not use is available
+ * to the following ones, and the last levels, usually the hardest, always keep some budget.
+ * Within a level, the average cost of each phase is measured, so that a phase is skipped if it is not
+ * expected to finish before the level deadline. A level is abandoned when its deadline is reached,
+ * or when its coverage gap has not closed for a share of its budget. Open levels instead may use all the remaining
+ * time and never stall, for searches that cannot go on once a level gives up.
+ * <p>
+ * The time used by every level and phase is kept and logged when the level finishes, and can be exported with
+ * {@link LevelReport#toCsv()}.
+ * Safe to use from several threads, each one working on its own levels.
+ */
+public final class TimeBudgetScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeBudgetScheduler.class);
+
+    /**
+     * How the time of a run is split
+     * @param totalMillis time available for the whole run, 0 to rely only on the Mork time limit
+     * @param levelShare fraction of the remaining time each level may use
+     * @param stallShare fraction of the level budget without closing the coverage gap before abandoning the level
+     */
+    public record Budget(long totalMillis, double levelShare, double stallShare) {
+        public Budget {
+            if (totalMillis < 0) {
+                throw new IllegalArgumentException("totalMillis cannot be negative, got " + totalMillis);
+            }
+            if (levelShare <= 0 || levelShare > 1 || stallShare <= 0 || stallShare > 1) {
+                throw new IllegalArgumentException("Shares must be in (0, 1], got levelShare=" + levelShare + ", stallShare=" + stallShare);
+            }
+        }
+
+        /**
+         * No budget, levels only stop at the Mork time limit. Time is still accounted.
+         */
+        public static Budget unlimited() {
+            return new Budget(0, 1, 1);
+        }
+
+        private boolean isLimited() {
+            return totalMillis > 0;
+        }
+    }
+
+    /**
+     * Work done inside a level whose time is accounted separately
+     */
+    public enum Phase {
+        START, SHAKE, SWAP11, SWAP22, POINT_WEIGHTING
+    }
+
+    /**
+     * How a level finished
+     */
+    public enum Outcome {
+        /**
+         * Found a feasible solution
+         */
+        FEASIBLE,
+        /**
+         * Finished its search without finding a feasible solution
+         */
+        INFEASIBLE,
+        /**
+         * Reached its deadline, stopped closing the coverage gap or was unlikely to close it
+         */
+        ABANDONED,
+        /**
+         * Stopped because its result was no longer needed, or the time limit was reached
+         */
+        CANCELLED
+    }
+
+    /**
+     * Time accounting of a finished level
+     * @param k number of sets of the level
+     * @param outcome how the level finished
+     * @param budgetMillis time the level could use, -1 if unlimited
+     * @param usedMillis time the level used
+     * @param phaseMillis time used by each phase
+     */
+    public record LevelReport(int k, Outcome outcome, long budgetMillis, long usedMillis, Map<Phase, Long> phaseMillis) {
+
+        /**
+         * Column names of {@link #toCsv()}
+         */
+        public static final String CSV_HEADER = "k,outcome,budgetMillis,usedMillis," + Arrays.stream(Phase.values())
+                .map(phase -> phase.name().toLowerCase() + "Millis")
+                .collect(Collectors.joining(","));
+
+        /**
+         * @return this report as a CSV row, with a column for every phase, 0 if it did not run
+         */
+        public String toCsv() {
+            var row = new StringBuilder().append(k).append(',').append(outcome).append(',')
+                    .append(budgetMillis).append(',').append(usedMillis);
+            for (var phase : Phase.values()) {
+                row.append(',').append(phaseMillis.getOrDefault(phase, 0L));
+            }
+            return row.toString();
+        }
+    }
+
+    private final Budget budget;
+    private final long deadline;
+    private final List<LevelReport> reports = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Start accounting a run now
+     * @param budget how the time of the run is split
+     */
+    public TimeBudgetScheduler(Budget budget) {
+        this.budget = budget;
+        this.deadline = budget.isLimited() ? System.nanoTime() + budget.totalMillis() * 1_000_000 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Start a level now, with a share of the remaining time
+     * @param k number of sets of the level
+     * @return the level, which must be finished by the caller
+     */
+    public Level startLevel(int k) {
+        long now = System.nanoTime();
+        long levelDeadline = budget.isLimited() ? now + (long) (Math.max(0, deadline - now) * budget.levelShare()) : Long.MAX_VALUE;
+        return new Level(k, now, levelDeadline, true);
+    }
+
+    /**
+     * Start a level now that may use all the remaining time and never stalls
+     * @param k number of sets of the level
+     * @return the level, which must be finished by the caller
+     */
+    public Level startOpenLevel(int k) {
+        return new Level(k, System.nanoTime(), deadline, false);
+    }
+
+    /**
+     * @return true if the run has no time left
+     */
+    public boolean isTimeUp() {
+        return TimeControl.isTimeUp() || System.nanoTime() > deadline;
+    }
+
+    /**
+     * @return time accounting of every finished level, in the order they finished
+     */
+    public List<LevelReport> getLevels() {
+        synchronized (reports) {
+            return List.copyOf(reports);
+        }
+    }
+
+    /**
+     * A k level being solved, used by a single thread
+     */
+    public final class Level {
+        private final int k;
+        private final long start;
+        private final long levelDeadline;
+        private final boolean canStall;
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private final int[] phaseCalls = new int[Phase.values().length];
+        private long lastGapChange;
+        private int bestGap = Integer.MAX_VALUE;
+        private boolean abandoned;
+
+        private Level(int k, long start, long levelDeadline, boolean canStall) {
+            this.k = k;
+            this.start = start;
+            this.levelDeadline = levelDeadline;
+            this.canStall = canStall;
+            this.lastGapChange = start;
+        }
+
+        /**
+         * @return true if the level reached its deadline, or the run has no time left
+         */
+        public boolean isOver() {
+            return isTimeUp() || System.nanoTime() > levelDeadline;
+        }
+
+        /**
+         * @return true if the run has no time left
+         */
+        public boolean isTimeUp() {
+            return TimeBudgetScheduler.this.isTimeUp();
+        }
+
+        /**
+         * @return true if the coverage gap has not closed for too long, never for open levels or with an unlimited budget
+         */
+        public boolean isStalled() {
+            if (!canStall || levelDeadline == Long.MAX_VALUE) {
+                return false;
+            }
+            return System.nanoTime() - lastGapChange > (levelDeadline - start) * budget.stallShare();
+        }
+
+        /**
+         * Give up this level before its deadline, for example when its coverage gap is not expected to close
+         */
+        public void abandon() {
+            abandoned = true;
+        }
+
+        /**
+         * @return true if the level was given up by {@link #abandon()}
+         */
+        public boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Record the remaining coverage gap, closing it resets the stall timer
+         * @param gap weight still to be covered to reach the required coverage
+         */
+        public void reportGap(int gap) {
+            if (gap < bestGap) {
+                bestGap = gap;
+                lastGapChange = System.nanoTime();
+            }
+        }
+
+        /**
+         * Whether a phase is expected to finish before the level deadline, judging by its average cost so far
+         * @param phase phase to run
+         * @return true if there is time for it, or it has not run yet
+         */
+        public boolean canAfford(Phase phase) {
+            int calls = phaseCalls[phase.ordinal()];
+            if (calls == 0 || levelDeadline == Long.MAX_VALUE) {
+                return !isOver();
+            }
+            return System.nanoTime() + phaseNanos[phase.ordinal()] / calls <= levelDeadline && !isTimeUp();
+        }
+
+        /**
+         * Account time spent in a phase
+         * @param phase phase that ran
+         * @param nanos time it took
+         */
+        public void record(Phase phase, long nanos) {
+            phaseNanos[phase.ordinal()] += nanos;
+            phaseCalls[phase.ordinal()]++;
+        }
+
+        /**
+         * @return number of sets of this level
+         */
+        public int k() {
+            return k;
+        }
+
+        /**
+         * Stop accounting this level and log its time
+         * @param outcome how the level finished
+         * @return time accounting of the level
+         */
+        public LevelReport finish(Outcome outcome) {
+            var phases = new EnumMap<Phase, Long>(Phase.class);
+            for (var phase : Phase.values()) {
+                if (phaseCalls[phase.ordinal()] > 0) {
+                    phases.put(phase, phaseNanos[phase.ordinal()] / 1_000_000);
+                }
+            }
+            long budgetMillis = levelDeadline == Long.MAX_VALUE ? -1 : (levelDeadline - start) / 1_000_000;
+            var report = new LevelReport(k, outcome, budgetMillis, (System.nanoTime() - start) / 1_000_000, phases);
+            reports.add(report);
+            log.info("k={} {} in {} ms of {} ms budget, phases {}", k, outcome, report.usedMillis(),
+                    budgetMillis < 0 ? "unlimited" : budgetMillis, phases);
+            return report;
+        }
+    }
+}
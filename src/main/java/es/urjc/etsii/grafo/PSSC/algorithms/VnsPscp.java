@@ -1,44 +1,187 @@
 package es.urjc.etsii.grafo.PSSC.algorithms;
 
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Budget;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Level;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.LevelReport;
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.Phase;
 import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive;
 import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
 import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
-import es.urjc.etsii.grafo.PSSC.model.neigh.PSSCBaseMove;
-import es.urjc.etsii.grafo.PSSC.model.neigh.Swap11Neighborhood;
+import es.urjc.etsii.grafo.PSSC.model.neigh.ParallelExplorer;
 import es.urjc.etsii.grafo.PSSC.model.neigh.Swap22Neighborhood;
 import es.urjc.etsii.grafo.algorithms.Algorithm;
-import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
-import es.urjc.etsii.grafo.util.CollectionUtil;
-import es.urjc.etsii.grafo.util.TimeControl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements a powerful Variable Neighborhood Search for the Partial Set Covering Problem (VNS-PSCP).
  *
  * This algorithm transforms the PSCP into a series of Maximum Set k-Covering Problems (MSKCP).
  * - The Outer Loop attempts to find a feasible solution for a given solution size 'k', then decrements 'k' and repeats.
- * - The Inner Loop uses a VNS to solve the MSKCP for the current 'k', aiming to maximize coverage.
+ * - The Inner Loop uses a VNS, see {@link FixedKVns}, to solve the MSKCP for the current 'k', aiming to maximize coverage.
  */
 public class VnsPscp extends Algorithm<PSSCSolution, PSSCInstance> {
 
     private static final Logger log = LoggerFactory.getLogger(VnsPscp.class);
 
-    private final int lMax;
+    /**
+     * Local search applied after each shake for a fixed k.
+     */
+    public enum LocalSearch {
+        /**
+         * Best improvement (1,1)-swaps, then first improvement (2,2)-swaps, until no swap improves the coverage.
+         */
+        VND,
+        /**
+         * Weighted point local search, see {@link PointWeightingLocalSearch}. Keeps swapping past local optima
+         * until it reaches a feasible solution or stops improving.
+         */
+        POINT_WEIGHTING
+    }
+
+    /**
+     * How the outer loop chooses the next k to try.
+     */
+    public enum KSchedule {
+        /**
+         * Try k - 1 after each success, stopping at the first failure.
+         * Each k may use all the remaining time, as the run ends when it gives up.
+         */
+        DECREMENT,
+        /**
+         * Try k - 1, k - 3 and k - 5 at the same time on separate threads, keeping the smallest success.
+         * A failure is taken as proof that no smaller k is feasible, as in {@link #DECREMENT},
+         * and probes made pointless by a smaller success or a larger failure are cancelled.
+         * k - 1 may use all the remaining time, the others only a share of it, and a probe stopped by its deadline
+         * or by a stalled coverage gap is tried again in the next round.
+         */
+        SPECULATIVE
+    }
 
     /**
-     * Constructor for the VNS-PSCP algorithm.
+     * How the starting solution for each k is built.
+     */
+    public enum StartPolicy {
+        /**
+         * From scratch, with the k best greedy sets.
+         */
+        COLD,
+        /**
+         * From the best feasible solution found so far, dropping the sets with the smallest unique coverage one at a time
+         * until k remain. The local search applied first by the VNS then re-optimizes it.
+         */
+        WARM
+    }
+
+    /**
+     * Number of k values probed at the same time, and distance between them, in {@link KSchedule#SPECULATIVE} mode.
+     */
+    private static final int SPECULATIVE_PROBES = 3;
+    private static final int SPECULATIVE_STRIDE = 2;
+    private static final long PROBE_POLL_MILLIS = 20;
+
+    /**
+     * Steps without improvement before the point weighting search gives up.
+     */
+    private static final int POINT_WEIGHTING_MAX_STAGNATION = 5000;
+
+    private final LocalSearch localSearch;
+    private final KSchedule kSchedule;
+    private final StartPolicy startPolicy;
+    private final Budget budget;
+    private final Options options;
+
+    /**
+     * Constructor for the VNS-PSCP algorithm with the default options.
      * @param algorithmName A unique name for this algorithm instance.
      * @param lMax The maximum shake strength as a percentage of the solution size k.
      */
     public VnsPscp(String algorithmName, int lMax) {
+        this(algorithmName, Options.defaults(lMax));
+    }
+
+    /**
+     * Constructor for the VNS-PSCP algorithm choosing every component.
+     * @param algorithmName A unique name for this algorithm instance.
+     * @param options Components of the algorithm, see {@link Options}.
+     */
+    public VnsPscp(String algorithmName, Options options) {
         super(algorithmName);
-        this.lMax = lMax;
+        this.localSearch = options.localSearch();
+        this.kSchedule = options.kSchedule();
+        this.startPolicy = options.startPolicy();
+        this.budget = options.budget();
+        this.options = options;
+    }
+
+    /**
+     * Components of the VNS-PSCP algorithm. Start from {@link #defaults(int)} and change what is needed with the with methods.
+     * @param lMax The maximum shake strength as a percentage of the solution size k.
+     * @param nThreads Number of threads used to explore the (2,2)-swap neighborhood, 1 to explore sequentially.
+     *                 More than one is intended for single instance runs with the parallel executor disabled, results are
+     *                 reproducible as the lowest index improving move is always selected.
+     * @param localSearch Local search applied after each shake.
+     * @param kSchedule Order in which the values of k are tried.
+     * @param startPolicy How the starting solution for each k is built.
+     * @param budget Time available for each run and share of it each k level may use, see {@link TimeBudgetScheduler}.
+     * @param abandonRule When a k is abandoned because its coverage gap is not expected to close, see {@link CoverageGapTrend}.
+     *                    An abandoned k counts as a failure, ending the run with {@link KSchedule#DECREMENT}.
+     */
+    public record Options(int lMax, int nThreads, LocalSearch localSearch, KSchedule kSchedule, StartPolicy startPolicy,
+                          Budget budget, CoverageGapTrend.Rule abandonRule) {
+        public Options {
+            if (lMax <= 0 || nThreads <= 0) {
+                throw new IllegalArgumentException("lMax and nThreads must be positive, got lMax=" + lMax + ", nThreads=" + nThreads);
+            }
+            Objects.requireNonNull(localSearch);
+            Objects.requireNonNull(kSchedule);
+            Objects.requireNonNull(startPolicy);
+            Objects.requireNonNull(budget);
+            Objects.requireNonNull(abandonRule);
+        }
+
+        /**
+         * Sequential VND, decreasing k by one from a cold start, without time budget nor abandonment rule
+         * @param lMax The maximum shake strength as a percentage of the solution size k.
+         */
+        public static Options defaults(int lMax) {
+            return new Options(lMax, 1, LocalSearch.VND, KSchedule.DECREMENT, StartPolicy.COLD, Budget.unlimited(), CoverageGapTrend.Rule.disabled());
+        }
+
+        public Options withThreads(int nThreads) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
+
+        public Options withLocalSearch(LocalSearch localSearch) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
+
+        public Options withKSchedule(KSchedule kSchedule) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
+
+        public Options withStartPolicy(StartPolicy startPolicy) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
+
+        public Options withBudget(Budget budget) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
+
+        public Options withAbandonRule(CoverageGapTrend.Rule abandonRule) {
+            return new Options(lMax, nThreads, localSearch, kSchedule, startPolicy, budget, abandonRule);
+        }
     }
 
     @Override
@@ -50,129 +193,212 @@ public class VnsPscp extends Algorithm<PSSCSolution, PSSCInstance> {
             return initialFeasibleSolution;
         }
 
-        PSSCSolution bestSolutionEver = initialFeasibleSolution;
-        int k = bestSolutionEver.getChosenSets().size();
-        log.info("Initial solution found with k={}. Starting k-thinning process.", k);
+        int k = initialFeasibleSolution.getChosenSets().size();
+        int lowerBound = instance.getSizeLowerBound();
+        log.info("Initial solution found with k={}, lower bound {}. Starting k-thinning process.", k, lowerBound);
 
         // 2. OUTER LOOP: Decrease k and solve the MSKCP for each k
-        while (k >= 0 && !TimeControl.isTimeUp()) {
-            log.info("Searching for a feasible solution of size k={}", k);
+        var scheduler = new TimeBudgetScheduler(budget);
+        PSSCSolution bestSolutionEver;
+        // Created for each run, so that its step counts are not mixed with those of other runs
+        var pointWeighting = new PointWeightingLocalSearch(POINT_WEIGHTING_MAX_STAGNATION);
+        // The threads exploring the (2,2)-swaps only live for this run
+        try (var parallel = options.nThreads() > 1 ? new ParallelExplorer(options.nThreads(), ParallelExplorer.Policy.LOWEST_INDEX) : null) {
+            var swap22 = new Swap22Neighborhood(25, parallel); // Use a smaller candidate list for the expensive neighborhood
+            var vns = new FixedKVns(options.lMax(), localSearch, 1, options.abandonRule(), swap22, pointWeighting, null);
+            bestSolutionEver = switch (kSchedule) {
+                case DECREMENT -> decreaseK(instance, initialFeasibleSolution, lowerBound, scheduler, vns);
+                case SPECULATIVE -> probeK(instance, initialFeasibleSolution, lowerBound, scheduler, vns);
+            };
+        }
 
-            PSSCSolution mskcpInitialSolution = this.newSolution(instance);
-            PSSCGreedyConstructive.addNBestGreedySets(mskcpInitialSolution, k);
-            mskcpInitialSolution.notifyUpdate();
+        var levels = scheduler.getLevels();
+        long startMillis = levels.stream().mapToLong(level -> level.phaseMillis().getOrDefault(Phase.START, 0L)).sum();
+        long usedMillis = levels.stream().mapToLong(LevelReport::usedMillis).sum();
+        log.info("{} start: {} k levels, {} ms building starting solutions, {} ms in total, {} ms per level",
+                startPolicy, levels.size(), startMillis, usedMillis, levels.isEmpty() ? 0 : usedMillis / levels.size());
+        bestSolutionEver.setLevelReports(levels.stream().map(LevelReport::toCsv).toList());
 
-            PSSCSolution bestSolutionForK = runVNS_for_fixed_k(mskcpInitialSolution);
+        if (localSearch == LocalSearch.POINT_WEIGHTING) {
+            log.info("Point weighting search: {} steps, {} steps/s", pointWeighting.getTotalSteps(), String.format("%.0f", pointWeighting.getStepsPerSecond()));
+        }
+        log.info("VNS-PSCP finished. Best solution found with score: {}", bestSolutionEver.getScore());
+        return bestSolutionEver;
+    }
+
+    /**
+     * Try every k below the greedy solution size, stopping at the first failure or at the lower bound.
+     * Each k is an open level, without its own deadline, so that the budget left when it gives up is not wasted.
+     * A k abandoned by the abandon rule still counts as a failure, ending the run early.
+     */
+    private PSSCSolution decreaseK(PSSCInstance instance, PSSCSolution bestSolutionEver, int lowerBound, TimeBudgetScheduler scheduler, FixedKVns vns) {
+        int k = bestSolutionEver.getChosenSets().size() - 1;
+        while (k >= lowerBound && !scheduler.isTimeUp()) {
+            log.info("Searching for a feasible solution of size k={}", k);
+
+            var level = scheduler.startOpenLevel(k);
+            PSSCSolution initialSolution = initialSolution(instance, bestSolutionEver, k, level, vns);
+            PSSCSolution bestSolutionForK = vns.solve(initialSolution, level, () -> false);
+            level.finish(FixedKVns.outcome(bestSolutionForK, level, false));
 
             if (bestSolutionForK.isCovered()) {
-                log.info("Success! Found a feasible solution for k={}. Coverage: {}", k, bestSolutionForK.coveredPoints().size());
+                log.info("Success! Found a feasible solution for k={}. Coverage: {}", k, bestSolutionForK.getCoveredCount());
                 bestSolutionEver = bestSolutionForK;
                 k--;
             } else {
-                log.info("Failed to find a feasible solution for k={}. Max coverage found: {}. Stopping search.", k, bestSolutionForK.coveredPoints().size());
+                log.info("Failed to find a feasible solution for k={}. Max coverage found: {}. Stopping search.", k, bestSolutionForK.getCoveredCount());
                 break;
             }
         }
-
-        log.info("VNS-PSCP finished. Best solution found with score: {}", bestSolutionEver.getScore());
         return bestSolutionEver;
     }
 
     /**
-     * The inner VNS loop. For a fixed solution size k, it tries to maximize coverage.
+     * Bracket k between the best feasible size and the largest failed one, initially the lower bound minus one,
+     * probing several values of k between them concurrently until the bracket is closed.
+     * The largest probe is an open level, as closing the bracket depends on it, so each round ends with a result for it
+     * unless the run has no time left.
      */
-    private PSSCSolution runVNS_for_fixed_k(PSSCSolution initialSolution) {
-        PSSCSolution currentBestForK = runLocalSearch_VND(initialSolution);
-        int k = initialSolution.getChosenSets().size();
-        int l_max_k = Math.max(1, (k * lMax) / 100);
-        int l = 1;
-
-        while (l <= l_max_k && !TimeControl.isTimeUp()) {
-            PSSCSolution shakenSolution = shake(currentBestForK.cloneSolution(), l);
-            PSSCSolution improvedSolution = runLocalSearch_VND(shakenSolution);
-
-            if (improvedSolution.coveredPoints().size() > currentBestForK.coveredPoints().size()) {
-                currentBestForK = improvedSolution;
-                l = 1;
-            } else {
-                l++;
+    private PSSCSolution probeK(PSSCInstance instance, PSSCSolution bestSolutionEver, int lowerBound, TimeBudgetScheduler scheduler, FixedKVns vns) {
+        int failedK = lowerBound - 1;
+        var executor = Executors.newFixedThreadPool(SPECULATIVE_PROBES);
+        try {
+            while (bestSolutionEver.getChosenSets().size() - 1 > failedK && !scheduler.isTimeUp()) {
+                var round = new ProbeRound(failedK, scheduler, vns);
+                var probes = new ArrayList<Probe>();
+                for (int i = 0; i < SPECULATIVE_PROBES; i++) {
+                    int k = bestSolutionEver.getChosenSets().size() - 1 - i * SPECULATIVE_STRIDE;
+                    if (k <= failedK) {
+                        break;
+                    }
+                    var level = i == 0 ? scheduler.startOpenLevel(k) : scheduler.startLevel(k);
+                    var probe = new Probe(level, initialSolution(instance, bestSolutionEver, k, level, vns));
+                    probe.future = executor.submit(() -> round.run(probe));
+                    probes.add(probe);
+                }
+                log.info("Probing k={} in parallel, bracket ({}, {}]", probes.stream().map(p -> p.k).toList(), failedK, bestSolutionEver.getChosenSets().size());
+                round.await(probes);
+
+                for (var probe : probes) {
+                    if (probe.result != null && probe.result.isCovered() && probe.k < bestSolutionEver.getChosenSets().size()) {
+                        log.info("Success! Found a feasible solution for k={}. Coverage: {}", probe.k, probe.result.getCoveredCount());
+                        bestSolutionEver = probe.result;
+                    }
+                }
+                // Probes cancelled, out of time or stalled left no result, failures above a success are ignored
+                for (var probe : probes) {
+                    if (probe.result != null && !probe.result.isCovered() && probe.k < bestSolutionEver.getChosenSets().size()) {
+                        log.info("Failed to find a feasible solution for k={}. Max coverage found: {}.", probe.k, probe.result.getCoveredCount());
+                        failedK = Math.max(failedK, probe.k);
+                    }
+                }
             }
+        } finally {
+            executor.shutdownNow();
         }
-        return currentBestForK;
+        return bestSolutionEver;
     }
 
     /**
-     * A responsive Variable Neighborhood Descent (VND) local search.
-     * It prioritizes fast (1,1)-swaps and only attempts the expensive (2,2)-swaps
-     * when no simpler improvements can be found.
+     * Starting solution of size k according to the start policy
+     * @param bestSolution best feasible solution found so far, larger than k
+     * @param level level accounting the time spent building it
+     * @param vns inner VNS of this run, which drops the sets for a warm start
      */
-    private PSSCSolution runLocalSearch_VND(PSSCSolution solution) {
-        // Instantiate neighborhoods here. This is clean and thread-safe.
-        var swap11 = new Swap11Neighborhood(50);
-        var swap22 = new Swap22Neighborhood(25); // Use a smaller candidate list for the expensive neighborhood
-
-        while (!TimeControl.isTimeUp()) {
-            // Phase 1: Try the fast (1,1)-swap with a "best improvement" strategy.
-            Optional<? extends PSSCBaseMove> best11Move = findBestMaximizingMove(swap11.explore(solution));
-
-            if (best11Move.isPresent() && best11Move.get().getScoreChange() > 0) {
-                solution = best11Move.get().execute(solution);
-                continue; // Improvement found, restart the VND to prioritize 1-1 swaps again.
-            }
-
-            // Phase 2: If no 1-1 swaps worked, try the expensive (2,2)-swap with a "first improvement" strategy.
-            Optional<Swap22Neighborhood.Swap22Move> first22Move = swap22.findFirstImprovingMove(solution);
-            
-            if (first22Move.isPresent()) {
-                // The move is guaranteed to be improving because the method checks for it.
-                solution = first22Move.get().execute(solution);
-                continue; // Improvement found, restart the VND.
-            }
-
-            // If we reach here, neither neighborhood found an improvement. The solution is a local optimum.
-            break;
+    private PSSCSolution initialSolution(PSSCInstance instance, PSSCSolution bestSolution, int k, Level level, FixedKVns vns) {
+        long start = System.nanoTime();
+        PSSCSolution solution;
+        if (startPolicy == StartPolicy.WARM) {
+            solution = bestSolution.cloneSolution();
+            vns.dropLeastUseful(solution, k);
+        } else {
+            solution = this.newSolution(instance);
+            PSSCGreedyConstructive.addNBestGreedySets(solution, k);
         }
+        solution.notifyUpdate();
+        level.record(Phase.START, System.nanoTime() - start);
         return solution;
     }
 
     /**
-     * Helper to find the best move from an ExploreResult, maximizing the score change.
+     * A value of k being solved on another thread, and its result if it finished
      */
-    private Optional<? extends PSSCBaseMove> findBestMaximizingMove(ExploreResult<? extends PSSCBaseMove, ?, ?> result) {
-        return result.moves().max(Comparator.comparing(PSSCBaseMove::getScoreChange));
+    private static final class Probe {
+        private final int k;
+        private final Level level;
+        private final PSSCSolution initialSolution;
+        private Future<?> future;
+        private volatile PSSCSolution result;
+
+        private Probe(Level level, PSSCSolution initialSolution) {
+            this.k = level.k();
+            this.level = level;
+            this.initialSolution = initialSolution;
+        }
     }
 
     /**
-     * Shake via Guided Destroy/Repair. Removes 'l' least useful sets and greedily adds 'l' new ones.
+     * Probes launched together, which stop as soon as another one makes their result pointless
      */
-    private PSSCSolution shake(PSSCSolution solution, int l) {
-        int k = solution.getChosenSets().size();
-        if (k == 0 || l == 0) return solution;
-
-        // GUIDED DESTROY
-        List<Candidate> setsToScore = new ArrayList<>();
-        int[] coverCount = solution.getCoverCount();
-
-        for (int set : solution.getChosenSets()) {
-            int redundancyScore = 0;
-            for (int point : solution.getInstance().getCoveredPoints(set)) {
-                redundancyScore += coverCount[point];
-            }
-            setsToScore.add(new Candidate(set, redundancyScore));
+    private final class ProbeRound {
+        private final AtomicInteger smallestSuccess = new AtomicInteger(Integer.MAX_VALUE);
+        private final AtomicInteger largestFailure;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final TimeBudgetScheduler scheduler;
+        private final FixedKVns vns;
+
+        private ProbeRound(int failedK, TimeBudgetScheduler scheduler, FixedKVns vns) {
+            this.largestFailure = new AtomicInteger(failedK);
+            this.scheduler = scheduler;
+            this.vns = vns;
         }
-        setsToScore.sort(Comparator.comparingInt(Candidate::score).reversed());
 
-        int nToRemove = Math.min(l, setsToScore.size());
-        for (int i = 0; i < nToRemove; i++) {
-            solution.removeSet(setsToScore.get(i).id());
+        private boolean pointless(int k) {
+            return cancelled.get() || k >= smallestSuccess.get() || k <= largestFailure.get();
         }
 
-        // GREEDY REPAIR
-        PSSCGreedyConstructive.addNBestGreedySets(solution, nToRemove);
+        private void run(Probe probe) {
+            var solution = vns.solve(probe.initialSolution, probe.level, () -> pointless(probe.k));
+            var outcome = FixedKVns.outcome(solution, probe.level, pointless(probe.k));
+            probe.level.finish(outcome);
+            switch (outcome) {
+                case FEASIBLE -> smallestSuccess.accumulateAndGet(probe.k, Math::min);
+                case INFEASIBLE -> largestFailure.accumulateAndGet(probe.k, Math::max);
+                case ABANDONED -> {
+                    if (!probe.level.isAbandoned()) {
+                        return; // Out of time or stalled, says nothing about k, which is probed again in the next round
+                    }
+                    largestFailure.accumulateAndGet(probe.k, Math::max);
+                }
+                case CANCELLED -> {
+                    return; // Stopped early, says nothing about k
+                }
+            }
+            probe.result = solution;
+        }
 
-        solution.notifyUpdate();
-        return solution;
+        /**
+         * Wait for every probe, checking the time limit from this thread and cancelling them when it is exceeded
+         */
+        private void await(List<Probe> probes) {
+            for (var probe : probes) {
+                while (true) {
+                    try {
+                        probe.future.get(PROBE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (scheduler.isTimeUp()) {
+                            cancelled.set(true);
+                        }
+                    } catch (InterruptedException e) {
+                        cancelled.set(true);
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Probe for k=" + probe.k + " failed", e.getCause());
+                    }
+                }
+            }
+        }
     }
-
-    private record Candidate(int id, int score) {}
-}
\ No newline at end of file
+}
@@ -1,12 +1,12 @@
 package es.urjc.etsii.grafo.PSSC.algorithms;
 
+import es.urjc.etsii.grafo.PSSC.constructives.GainBucketQueue;
 import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive;
 import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
 import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
 import es.urjc.etsii.grafo.PSSC.model.neigh.Swap11Neighborhood;
 import es.urjc.etsii.grafo.algorithms.Algorithm;
 import es.urjc.etsii.grafo.util.TimeControl;
-import es.urjc.etsii.grafo.util.collections.BitSet;
 import es.urjc.etsii.grafo.util.random.RandomManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,11 +21,22 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
     private static final Logger log = LoggerFactory.getLogger(VnsPscp11swaponlyintelligentshake.class);
 
     private final int lMax;
+    private final CoverageGapTrend.Rule abandonRule;
     private final Swap11Neighborhood ls1;
 
     public VnsPscp11swaponlyintelligentshake(String algorithmName, int lMax) {
+        this(algorithmName, lMax, CoverageGapTrend.Rule.disabled());
+    }
+
+    /**
+     * @param algorithmName A unique name for this algorithm instance.
+     * @param lMax The maximum shake strength as a percentage of the solution size k.
+     * @param abandonRule When a k is abandoned because its coverage gap is not expected to close, see {@link CoverageGapTrend}.
+     */
+    public VnsPscp11swaponlyintelligentshake(String algorithmName, int lMax, CoverageGapTrend.Rule abandonRule) {
         super(algorithmName);
         this.lMax = lMax;
+        this.abandonRule = abandonRule;
         this.ls1 = new Swap11Neighborhood();
     }
 
@@ -41,13 +52,8 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
         int k = bestSolutionEver.getChosenSets().size();
         log.info("Initial solution found with k={}. Starting k-thinning process.", k);
 
-        // OUTER LOOP
+        // OUTER LOOP, a k whose coverage gap is not expected to close is abandoned by the inner loop, and counts as a failure
         while (k >= 0 && !TimeControl.isTimeUp()) {
-            if (k < bestSolutionEver.getChosenSets().size() - 10 && k > 0) {
-                log.warn("K ({}) has dropped significantly below best solution size ({}), terminating early.", k, bestSolutionEver.getChosenSets().size());
-                break;
-            }
-
             log.info("Searching for a feasible solution of size k={}", k);
 
             PSSCSolution mskcpInitialSolution = this.newSolution(instance);
@@ -57,11 +63,11 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
             PSSCSolution bestSolutionForK = runVNS_for_fixed_k(mskcpInitialSolution);
 
             if (bestSolutionForK.isCovered()) {
-                log.info("Success! Found a feasible solution for k={}. Coverage: {}", k, bestSolutionForK.coveredPoints().size());
+                log.info("Success! Found a feasible solution for k={}. Coverage: {}", k, bestSolutionForK.getCoveredCount());
                 bestSolutionEver = bestSolutionForK;
                 k--;
             } else {
-                log.info("Failed to find a feasible solution for k={}. Max coverage found: {}. Stopping search.", k, bestSolutionForK.coveredPoints().size());
+                log.info("Failed to find a feasible solution for k={}. Max coverage found: {}. Stopping search.", k, bestSolutionForK.getCoveredCount());
                 break;
             }
         }
@@ -75,16 +81,26 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
         int k = initialSolution.getChosenSets().size();
         int l_max_k = Math.max(1, (k * lMax) / 100);
         int l = 1;
+        var trend = new CoverageGapTrend(abandonRule, k, l_max_k, currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
 
         while (l <= l_max_k && !TimeControl.isTimeUp()) {
-            PSSCSolution shakenSolution = shake(currentBestForK.cloneSolution(), l);
+            // Shake and improve in place, undoing the changes if they do not improve coverage
+            int bestCovered = currentBestForK.getCoveredCount();
+            int checkpoint = currentBestForK.checkpoint();
+            PSSCSolution shakenSolution = shake(currentBestForK, l);
             PSSCSolution improvedSolution = runLocalSearch_VND(shakenSolution);
-            if (improvedSolution.coveredPoints().size() > currentBestForK.coveredPoints().size()) {
-                currentBestForK = improvedSolution;
+            if (improvedSolution.getCoveredCount() > bestCovered) {
+                currentBestForK.commit(checkpoint);
                 l = 1;
             } else {
+                currentBestForK.rollback(checkpoint);
                 l++;
             }
+
+            trend.record(currentBestForK.minCoveredRequired() - currentBestForK.getCoveredCount());
+            if (trend.shouldAbandon()) {
+                break;
+            }
         }
         return currentBestForK;
     }
@@ -125,15 +141,9 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
         // Calculate the "usefulness" (contribution) of each set in the solution.
         // A set's contribution is the number of points it covers uniquely.
         List<SetContribution> contributions = new ArrayList<>();
-        int[] coverCount = solution.getCoverCount();
+        int[] uniqueCoverage = solution.getUniqueCoverage();
         for (int set : solution.getChosenSets()) {
-            int uniquePoints = 0;
-            for (int point : solution.getInstance().getCoveredPoints(set)) {
-                if (coverCount[point] == 1) {
-                    uniquePoints++;
-                }
-            }
-            contributions.add(new SetContribution(set, uniquePoints));
+            contributions.add(new SetContribution(set, uniqueCoverage[set]));
         }
 
         // Sort the sets by their contribution, from LEAST useful to most useful.
@@ -149,32 +159,21 @@ public class VnsPscp11swaponlyintelligentshake extends Algorithm<PSSCSolution, P
         // Greedily add 'nToRemove' new sets, but with some randomness.
         var random = RandomManager.getRandom();
         final int rclSize = 3; // Restricted Candidate List size. A good parameter to tune.
+        int[] rcl = new int[rclSize];
+        // Candidates are kept by gain in a bucket queue, updated as sets are added
+        var candidates = new GainBucketQueue(solution);
 
         for (int i = 0; i < nToRemove; i++) {
-            var currentlyCovered = solution.coveredPoints();
-
             // Find the best candidates to add.
-            List<SetContribution> candidates = new ArrayList<>();
-            for (int s = 0; s < solution.getInstance().getnSets(); s++) {
-                if (!solution.getChosenSets().contains(s) && !solution.getInstance().getUselessSets().contains(s)) {
-                    var contribution = solution.getInstance().getCoveredPoints(s).clone();
-                    contribution.andNot(currentlyCovered);
-                    candidates.add(new SetContribution(s, contribution.size()));
-                }
-            }
-            
-            if (candidates.isEmpty()) {
+            int stopIndex = candidates.best(rcl, rclSize);
+            if (stopIndex == 0) {
                 break; // No more sets can be added
             }
 
-            // Sort candidates from best to worst.
-            candidates.sort(Collections.reverseOrder());
-
             // Select one of the top 'rclSize' candidates randomly.
-            int stopIndex = Math.min(rclSize, candidates.size());
             int chosenIndex = random.nextInt(stopIndex);
-            
-            solution.addSet(candidates.get(chosenIndex).setId());
+
+            candidates.addSet(rcl[chosenIndex]);
         }
 
         solution.notifyUpdate();
@@ -0,0 +1,191 @@
+package es.urjc.etsii.grafo.PSSC.constructives;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue of the sets not in a solution, keyed by their current gain.
+ * Each bucket is a doubly linked list stored in int arrays, so moving a set between buckets is O(1).
+ * <p>
+ * Sets must be added through {@link #addSet(int)}: for every point that becomes covered,
+ * the sets touching it are moved to the bucket of their new gain. As gains only decrease while adding sets,
+ * the highest non-empty bucket is found by moving a pointer downwards, giving near-linear total construction time
+ * and constant time extraction of the best sets. Sets inside a bucket are in no particular order.
+ */
+public final class GainBucketQueue {
+
+    private static final int NONE = -1;
+
+    private final PSSCSolution solution;
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    /**
+     * Bucket where each set is stored, NONE if the set is not in the queue
+     */
+    private final int[] bucket;
+    private final int[] newlyCovered;
+    private int top;
+    private int size;
+
+    /**
+     * Build a queue with every set not in the solution and not useless
+     * @param solution solution sets are added to, must only be modified through this queue while it is used
+     */
+    public GainBucketQueue(PSSCSolution solution) {
+        this.solution = solution;
+        var instance = solution.getInstance();
+        int nSets = instance.getnSets();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] gain = solution.getGain();
+        var chosenSets = solution.getChosenSets();
+        var uselessSets = instance.getUselessSets();
+
+        int maxGain = 0;
+        int maxSetSize = 0;
+        for (int s = 0; s < nSets; s++) {
+            maxGain = Math.max(maxGain, gain[s]);
+            maxSetSize = Math.max(maxSetSize, setOffsets[s + 1] - setOffsets[s]);
+        }
+        this.head = new int[maxGain + 1];
+        this.next = new int[nSets];
+        this.prev = new int[nSets];
+        this.bucket = new int[nSets];
+        this.newlyCovered = new int[maxSetSize];
+        Arrays.fill(head, NONE);
+        Arrays.fill(bucket, NONE);
+
+        // Insert in reverse order so each bucket lists its sets by ascending id
+        for (int s = nSets - 1; s >= 0; s--) {
+            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
+                insert(s, gain[s]);
+            }
+        }
+        this.top = maxGain;
+    }
+
+    /**
+     * Returns whether there are sets left to add
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a set with the maximum gain, in O(1) amortized time
+     * @return set id, or -1 if the queue is empty
+     */
+    public int best() {
+        if (size == 0) {
+            return NONE;
+        }
+        while (head[top] == NONE) {
+            top--;
+        }
+        return head[top];
+    }
+
+    /**
+     * Fill an array with the sets of highest gain, from best to worst. Used to build restricted candidate lists.
+     * @param candidates array to fill
+     * @param k maximum number of sets to return, at most candidates.length
+     * @return number of sets written
+     */
+    public int best(int[] candidates, int k) {
+        int n = 0;
+        if (size == 0) {
+            return 0;
+        }
+        best(); // Move top to the highest non-empty bucket
+        for (int g = top; g >= 0 && n < k; g--) {
+            for (int s = head[g]; s != NONE && n < k; s = next[s]) {
+                candidates[n++] = s;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Add a set to the solution, remove it from the queue and update the gain of every affected set
+     * @param set set to add, must be in the queue
+     */
+    public void addSet(int set) {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] coverCount = solution.getCoverCount();
+
+        int n = 0;
+        for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+            if (coverCount[setPoints[i]] == 0) {
+                newlyCovered[n++] = setPoints[i];
+            }
+        }
+        unlink(set);
+        solution.addSet(set);
+
+        int[] gain = solution.getGain();
+        for (int i = 0; i < n; i++) {
+            int point = newlyCovered[i];
+            for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                int other = pointSets[j];
+                if (bucket[other] != NONE && bucket[other] != gain[other]) {
+                    unlink(other);
+                    insert(other, gain[other]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Greedily add sets to the solution, always picking a set with the maximum gain
+     * @param solution solution to add sets to
+     * @param n maximum number of sets to add
+     * @param untilCovered stop as soon as the solution is feasible
+     * @return number of sets added
+     */
+    static int addSets(PSSCSolution solution, int n, boolean untilCovered) {
+        if (n <= 0 || untilCovered && solution.isCovered()) {
+            return 0;
+        }
+        var queue = new GainBucketQueue(solution);
+        int added = 0;
+        while (added < n && !queue.isEmpty()) {
+            queue.addSet(queue.best());
+            added++;
+            if (untilCovered && solution.isCovered()) {
+                break;
+            }
+        }
+        return added;
+    }
+
+    private void insert(int set, int gain) {
+        bucket[set] = gain;
+        prev[set] = NONE;
+        next[set] = head[gain];
+        if (head[gain] != NONE) {
+            prev[head[gain]] = set;
+        }
+        head[gain] = set;
+        size++;
+    }
+
+    private void unlink(int set) {
+        int b = bucket[set];
+        if (prev[set] != NONE) {
+            next[prev[set]] = next[set];
+        } else {
+            head[b] = next[set];
+        }
+        if (next[set] != NONE) {
+            prev[next[set]] = prev[set];
+        }
+        bucket[set] = NONE;
+        size--;
+    }
+}
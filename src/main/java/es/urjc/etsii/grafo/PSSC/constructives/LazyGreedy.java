@@ -0,0 +1,93 @@
+package es.urjc.etsii.grafo.PSSC.constructives;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+
+/**
+ * Lazy greedy selection: the gain of a set can only decrease while sets are being added,
+ * so gains computed earlier are upper bounds of the current ones. Sets are kept in a max-heap
+ * ordered by their possibly stale gain, and only the top of the heap is re-evaluated:
+ * if its gain is still up to date no other set can be better, otherwise it is pushed back with the new gain.
+ * <p>
+ * Ties are broken by the lowest set id, so the selection is the same as scanning all sets
+ * and keeping the first one with the maximum gain.
+ */
+final class LazyGreedy {
+
+    private LazyGreedy() {}
+
+    /**
+     * Greedily add sets to a solution
+     * @param solution solution to add sets to
+     * @param n maximum number of sets to add
+     * @param untilCovered stop as soon as the solution is feasible
+     * @return number of sets added
+     */
+    static int addSets(PSSCSolution solution, int n, boolean untilCovered) {
+        if (n <= 0 || untilCovered && solution.isCovered()) {
+            return 0;
+        }
+        var instance = solution.getInstance();
+        var chosenSets = solution.getChosenSets();
+        var uselessSets = instance.getUselessSets();
+        int[] gain = solution.getGain();
+
+        // Heap keys: gain in the high 32 bits, inverted set id in the low bits so lower ids go first
+        long[] heap = new long[instance.getnSets()];
+        int size = 0;
+        for (int s = 0; s < instance.getnSets(); s++) {
+            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
+                heap[size++] = key(gain[s], s);
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i);
+        }
+
+        int added = 0;
+        while (added < n && size > 0) {
+            int set = set(heap[0]);
+            int bound = (int) (heap[0] >>> 32);
+            if (gain[set] != bound) {
+                // Stale bound, update and let the set sink to its current position
+                heap[0] = key(gain[set], set);
+                siftDown(heap, size, 0);
+                continue;
+            }
+            heap[0] = heap[--size];
+            siftDown(heap, size, 0);
+            solution.addSet(set);
+            added++;
+            if (untilCovered && solution.isCovered()) {
+                break;
+            }
+        }
+        return added;
+    }
+
+    private static long key(int gain, int set) {
+        return ((long) gain << 32) | (Integer.MAX_VALUE - set);
+    }
+
+    private static int set(long key) {
+        return Integer.MAX_VALUE - (int) key;
+    }
+
+    private static void siftDown(long[] heap, int size, int i) {
+        long value = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+}
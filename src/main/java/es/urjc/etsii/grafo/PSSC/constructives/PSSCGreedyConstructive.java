@@ -4,7 +4,6 @@ import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
 import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
 import es.urjc.etsii.grafo.create.Constructive;
 import es.urjc.etsii.grafo.util.CollectionUtil;
-import es.urjc.etsii.grafo.util.collections.BitSet;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +15,42 @@ import java.util.List;
  */
 public class PSSCGreedyConstructive extends Constructive<PSSCSolution, PSSCInstance> {
 
+    /**
+     * How the best set is found at each greedy step.
+     */
+    public enum GreedyMode {
+        /**
+         * Scan every set at each step, breaking ties by the lowest set id. Gains are maintained by the solution, so each step is a linear pass over an int array.
+         */
+        SCAN,
+        /**
+         * Max-heap with stale gains, see {@link LazyGreedy}. Selects the same sets as SCAN. Only re-evaluates the top of the heap, but as adding a set
+         * lowers the gain of many others, it pays off only when the gains are not maintained incrementally.
+         */
+        LAZY,
+        /**
+         * Bucket queue keyed by gain, see {@link GainBucketQueue}. Ties are not broken by set id,
+         * so the selected sets may differ from the other modes.
+         */
+        BUCKET
+    }
+
+    private final GreedyMode mode;
+
+    /**
+     * Greedy constructive scanning all sets at each step
+     */
+    public PSSCGreedyConstructive() {
+        this(GreedyMode.SCAN);
+    }
+
+    /**
+     * @param mode how the best set is found at each step
+     */
+    public PSSCGreedyConstructive(GreedyMode mode) {
+        this.mode = mode;
+    }
+
     /**
      * This is the method called when PSSCGreedyConstructive is used as a MORK component.
      * It builds a feasible solution and then improves it by removing redundant sets.
@@ -23,7 +58,7 @@ public class PSSCGreedyConstructive extends Constructive<PSSCSolution, PSSCInsta
     @Override
     public PSSCSolution construct(PSSCSolution solution) {
         // Phase 1: Greedily build until feasible
-        buildUntilFeasible(solution);
+        buildUntilFeasible(solution, mode);
         // Phase 2: Clean up any redundant sets
         redundancyElimination(solution);
         
@@ -37,8 +72,25 @@ public class PSSCGreedyConstructive extends Constructive<PSSCSolution, PSSCInsta
      * @param solution The solution to modify.
      */
     public static void buildUntilFeasible(PSSCSolution solution) {
+        buildUntilFeasible(solution, GreedyMode.SCAN);
+    }
+
+    /**
+     * Helper method to greedily add sets until the solution is feasible.
+     * @param solution The solution to modify.
+     * @param mode how the best set is found at each step
+     */
+    public static void buildUntilFeasible(PSSCSolution solution, GreedyMode mode) {
+        if (mode == GreedyMode.LAZY) {
+            LazyGreedy.addSets(solution, Integer.MAX_VALUE, true);
+            return;
+        }
+        if (mode == GreedyMode.BUCKET) {
+            GainBucketQueue.addSets(solution, Integer.MAX_VALUE, true);
+            return;
+        }
         while (!solution.isCovered()) {
-            boolean improved = addNBestGreedySets(solution, 1);
+            boolean improved = addNBestGreedySets(solution, 1, mode);
             if (!improved) {
                 // If we cannot add any more sets but are still not feasible, break to avoid infinite loop.
                 break;
@@ -54,17 +106,34 @@ public class PSSCGreedyConstructive extends Constructive<PSSCSolution, PSSCInsta
      * @return true if at least one set was successfully added, false otherwise.
      */
     public static boolean addNBestGreedySets(PSSCSolution solution, int n) {
+        return addNBestGreedySets(solution, n, GreedyMode.SCAN);
+    }
+
+    /**
+     * Greedily add a specific number of the best sets to a solution.
+     * @param solution The solution to add sets to.
+     * @param n The number of sets to add.
+     * @param mode how the best set is found at each step
+     * @return true if at least one set was successfully added, false otherwise.
+     */
+    public static boolean addNBestGreedySets(PSSCSolution solution, int n, GreedyMode mode) {
+        if (mode == GreedyMode.LAZY) {
+            return LazyGreedy.addSets(solution, n, false) > 0;
+        }
+        if (mode == GreedyMode.BUCKET) {
+            return GainBucketQueue.addSets(solution, n, false) > 0;
+        }
+        var instance = solution.getInstance();
+        int[] gain = solution.getGain();
         boolean changed = false;
         for (int i = 0; i < n; i++) {
             int bestSetToAdd = -1;
             int maxNewCovered = -1;
-            BitSet currentlyCovered = solution.coveredPoints();
 
-            for (int s = 0; s < solution.getInstance().getnSets(); s++) {
-                if (!solution.getChosenSets().contains(s) && !solution.getInstance().getUselessSets().contains(s)) {
-                    BitSet contribution = solution.getInstance().getCoveredPoints(s).clone();
-                    contribution.andNot(currentlyCovered);
-                    int newCovered = contribution.size();
+            for (int s = 0; s < instance.getnSets(); s++) {
+                if (!solution.getChosenSets().contains(s) && !instance.getUselessSets().contains(s)) {
+                    // Weight of the points of s that are not covered yet
+                    int newCovered = gain[s];
                     if (newCovered > maxNewCovered) {
                         maxNewCovered = newCovered;
                         bestSetToAdd = s;
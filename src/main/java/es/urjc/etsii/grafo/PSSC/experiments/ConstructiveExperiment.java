@@ -1,5 +1,6 @@
 package es.urjc.etsii.grafo.PSSC.experiments;
 
+import es.urjc.etsii.grafo.PSSC.algorithms.VnsPscp;
 import es.urjc.etsii.grafo.PSSC.algorithms.VnsPscp11swaponlyintelligentshake;
 import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive;
 import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
@@ -18,6 +19,7 @@ import java.util.List;
  * This configuration is set to run and compare:
  * 1. A fast Greedy constructive heuristic.
  * 2. The advanced VNS-PSCP algorithm.
+ * 3. VNS-PSCP using the point weighting local search for each k.
  */
 public class ConstructiveExperiment extends AbstractExperiment<PSSCSolution, PSSCInstance> {
 
@@ -49,6 +51,9 @@ public class ConstructiveExperiment extends AbstractExperiment<PSSCSolution, PSS
         );
         algorithms.add(vnsPscp);
 
+        // ALGORITHM 3: Same k-thinning, replacing the swap descent with the point weighting local search.
+        algorithms.add(new VnsPscp("VNS-PSCP-PW", VnsPscp.Options.defaults(lMaxPercentage).withLocalSearch(VnsPscp.LocalSearch.POINT_WEIGHTING)));
+
 
         return algorithms;
     }
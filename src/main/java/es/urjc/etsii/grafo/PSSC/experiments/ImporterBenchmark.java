@@ -0,0 +1,114 @@
+package es.urjc.etsii.grafo.PSSC.experiments;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstanceParser;
+import es.urjc.etsii.grafo.util.collections.BitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.stream.Stream;
+
+/**
+ * Measures instance parsing throughput (MB/s) of the byte-level parser against the previous
+ * java.util.Scanner based implementation. Only parsing is timed, instance preprocessing is not included.
+ * Run with: java -jar PSSC.jar bench-import [instance folder]
+ */
+public class ImporterBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(ImporterBenchmark.class);
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int TIMED_ROUNDS = 5;
+
+    private ImporterBenchmark() {}
+
+    public static void run(Path folder) throws IOException {
+        List<Path> candidates = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(folder)) {
+            paths.filter(Files::isRegularFile).sorted().forEach(candidates::add);
+        }
+        // Only benchmark files in the expected format, as the Scanner baseline cannot report errors cleanly
+        List<Path> files = new ArrayList<>();
+        long totalBytes = 0;
+        for (Path file : candidates) {
+            try {
+                PSSCInstanceParser.parse(file);
+                files.add(file);
+                totalBytes += Files.size(file);
+            } catch (IOException e) {
+                log.warn("Skipping {}: {}", file, e.getMessage());
+            }
+        }
+        log.info("Benchmarking import of {} files, {} MB total", files.size(), String.format("%.2f", totalBytes / 1e6));
+
+        List<Parser> parsers = List.of(
+                new Parser("Scanner", ImporterBenchmark::parseWithScanner),
+                new Parser("Tokenizer (Reader)", f -> {
+                    try (BufferedReader reader = Files.newBufferedReader(f)) {
+                        return PSSCInstanceParser.parse(reader, f.getFileName().toString()).nSets();
+                    }
+                }),
+                new Parser("Tokenizer (Channel)", f -> {
+                    try (FileChannel channel = FileChannel.open(f, StandardOpenOption.READ)) {
+                        return PSSCInstanceParser.parse(channel, f.getFileName().toString()).nSets();
+                    }
+                }),
+                new Parser("Tokenizer (mmap)", f -> PSSCInstanceParser.parse(f).nSets())
+        );
+
+        for (Parser parser : parsers) {
+            long checksum = 0;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                for (Path file : files) {
+                    checksum += parser.action.parse(file);
+                }
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMED_ROUNDS; i++) {
+                for (Path file : files) {
+                    checksum += parser.action.parse(file);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mbPerSecond = totalBytes * (double) TIMED_ROUNDS / 1e6 / seconds;
+            log.info("{}: {} MB/s ({} s for {} rounds, checksum {})", parser.name, String.format("%.1f", mbPerSecond), String.format("%.3f", seconds), TIMED_ROUNDS, checksum);
+        }
+    }
+
+    /**
+     * Previous importer implementation, kept as the benchmark baseline
+     */
+    private static int parseWithScanner(Path file) throws IOException {
+        try (Scanner sc = new Scanner(Files.newBufferedReader(file))) {
+            int nPoints = sc.nextInt();
+            int nSets = sc.nextInt();
+            for (int i = 0; i < nSets; i++) sc.nextInt();
+            BitSet[] coverage = new BitSet[nSets];
+            for (int s = 0; s < nSets; s++) {
+                coverage[s] = new BitSet(nPoints);
+            }
+            for (int p = 0; p < nPoints; p++) {
+                int k = sc.nextInt();
+                for (int h = 0; h < k; h++) {
+                    coverage[sc.nextInt() - 1].add(p);
+                }
+            }
+            return nSets;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ParseAction {
+        int parse(Path file) throws IOException;
+    }
+
+    private record Parser(String name, ParseAction action) {}
+}
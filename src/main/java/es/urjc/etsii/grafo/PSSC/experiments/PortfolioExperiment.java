@@ -0,0 +1,40 @@
+package es.urjc.etsii.grafo.PSSC.experiments;
+
+import es.urjc.etsii.grafo.PSSC.algorithms.PortfolioVnsPscp;
+import es.urjc.etsii.grafo.PSSC.algorithms.VnsPscp;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.algorithms.Algorithm;
+import es.urjc.etsii.grafo.experiment.AbstractExperiment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Experiment comparing the sequential VNS-PSCP with the multi-threaded portfolio of VNS workers.
+ * The portfolio already uses several threads, so this experiment should be run alone with the parallel executor disabled:
+ * <pre>
+ * java -jar target/PSSC.jar --solver.experiments=PortfolioExperiment --solver.parallelExecutor=false
+ * </pre>
+ */
+public class PortfolioExperiment extends AbstractExperiment<PSSCSolution, PSSCInstance> {
+
+    /**
+     * Number of workers of the portfolio, each one running on its own thread.
+     */
+    private static final int WORKERS = 4;
+
+    @Override
+    public List<Algorithm<PSSCSolution, PSSCInstance>> getAlgorithms() {
+        var algorithms = new ArrayList<Algorithm<PSSCSolution, PSSCInstance>>();
+
+        // Maximum shake strength as a percentage of the current solution size k, as in ConstructiveExperiment.
+        int lMaxPercentage = 20;
+        algorithms.add(new VnsPscp("VNS-PSCP-WARM", VnsPscp.Options.defaults(lMaxPercentage).withStartPolicy(VnsPscp.StartPolicy.WARM)));
+
+        algorithms.add(new PortfolioVnsPscp("Portfolio-VNS-PSCP", WORKERS));
+        algorithms.add(new PortfolioVnsPscp("Portfolio-VNS-PSCP-Migration", PortfolioVnsPscp.Options.defaults(WORKERS).withMigrationPeriod(50)));
+
+        return algorithms;
+    }
+}
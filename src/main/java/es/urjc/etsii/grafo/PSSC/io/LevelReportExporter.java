@@ -0,0 +1,47 @@
+package es.urjc.etsii.grafo.PSSC.io;
+
+import es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler.LevelReport;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.annotation.SerializerSource;
+import es.urjc.etsii.grafo.executors.WorkUnitResult;
+import es.urjc.etsii.grafo.io.serializers.AbstractSolutionSerializerConfig;
+import es.urjc.etsii.grafo.io.serializers.SolutionSerializer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+/**
+ * Export the time accounting of the k levels searched by each run, see {@link es.urjc.etsii.grafo.PSSC.algorithms.TimeBudgetScheduler}.
+ */
+public class LevelReportExporter extends SolutionSerializer<PSSCSolution, PSSCInstance> {
+
+    protected LevelReportExporter(LevelReportExporterConfig config) {
+        super(config);
+    }
+
+    /**
+     * Export the level reports attached to the solution as CSV, one row per level in the order they finished. Example:
+     * k,outcome,budgetMillis,usedMillis,startMillis,shakeMillis,swap11Millis,swap22Millis,point_weightingMillis
+     * 41,FEASIBLE,-1,1520,3,210,940,367,0
+     * Only the header is written if the algorithm did not record its levels.
+     *
+     * @param writer Output
+     * @param result Solution whose level reports are exported
+     * @throws IOException if anything goes wrong while writing
+     */
+    @Override
+    public void export(BufferedWriter writer, WorkUnitResult<PSSCSolution, PSSCInstance> result) throws IOException {
+        writer.write(LevelReport.CSV_HEADER);
+        writer.newLine();
+        for (var row : result.solution().getLevelReports()) {
+            writer.write(row);
+            writer.newLine();
+        }
+    }
+
+    @SerializerSource
+    @ConfigurationProperties(prefix = "serializers.level-report")
+    public static class LevelReportExporterConfig extends AbstractSolutionSerializerConfig {}
+}
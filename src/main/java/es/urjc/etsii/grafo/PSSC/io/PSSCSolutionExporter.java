@@ -25,6 +25,7 @@ public class PSSCSolutionExporter extends SolutionSerializer<PSSCSolution, PSSCI
      * the file will contain the following text:
      * 3
      * 7 10 17
+     * Set ids always refer to the original instance, even if the solved instance has been reduced.
      *
      * @param writer Output
      * @param result Solution to export
@@ -33,9 +34,9 @@ public class PSSCSolutionExporter extends SolutionSerializer<PSSCSolution, PSSCI
     @Override
     public void export(BufferedWriter writer, WorkUnitResult<PSSCSolution, PSSCInstance> result) throws IOException {
         var solution = result.solution();
-        writer.write(solution.getScore());
+        writer.write(String.valueOf(solution.getScore()));
         writer.newLine();
-        for(var set: solution.getChosenSets()){
+        for(var set: solution.getOriginalSets()){
             writer.write(set + " ");
         }
     }
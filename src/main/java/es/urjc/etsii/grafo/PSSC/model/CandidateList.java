@@ -0,0 +1,79 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import java.util.Arrays;
+
+/**
+ * Most promising sets to add to a solution, shared by all the neighborhoods exploring it.
+ * <p>
+ * A set is promising if it covers points that are uncovered or covered by a single chosen set,
+ * and is ranked by the weight of those points, which the solution keeps up to date as cover counts
+ * cross 0, 1 and 2 (see {@link PSSCSolution#getWeakCoverage()}). The top sets are selected again only
+ * when the solution version changes, and requests for fewer sets reuse the last selection.
+ * Ties are broken by the lowest set id.
+ */
+public final class CandidateList {
+
+    private final PSSCSolution solution;
+    private int[] top = new int[0];
+    private int size;
+    /**
+     * Number of sets requested in the last selection, and solution version it was computed for
+     */
+    private int selectedK = -1;
+    private int selectedVersion;
+
+    CandidateList(PSSCSolution solution) {
+        this.solution = solution;
+    }
+
+    /**
+     * Select the best k candidates, from best to worst. They are read with {@link #view()}.
+     * @param k maximum number of candidates
+     * @return number of candidates available, at most k
+     */
+    public int top(int k) {
+        if (k <= 0) {
+            return 0;
+        }
+        if (selectedK < k || selectedVersion != solution.getVersion()) {
+            select(k);
+        }
+        return Math.min(k, size);
+    }
+
+    /**
+     * Candidates of the last call to {@link #top(int)}, from best to worst. Must not be modified,
+     * and is only valid until the solution changes or the next call to {@link #top(int)}.
+     * @return array whose first positions contain the candidates
+     */
+    public int[] view() {
+        return top;
+    }
+
+    private void select(int k) {
+        if (top.length < k) {
+            top = Arrays.copyOf(top, k);
+        }
+        var instance = solution.getInstance();
+        var chosenSets = solution.getChosenSets();
+        var uselessSets = instance.getUselessSets();
+        int[] score = solution.getWeakCoverage();
+
+        // Insertion into a sorted array of size k, most sets are discarded by comparing with the last one
+        size = 0;
+        for (int s = 0; s < instance.getnSets(); s++) {
+            int sc = score[s];
+            if (sc == 0 || size == k && sc <= score[top[size - 1]] || chosenSets.contains(s) || uselessSets.contains(s)) {
+                continue;
+            }
+            int i = size < k ? size++ : size - 1;
+            while (i > 0 && score[top[i - 1]] < sc) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = s;
+        }
+        selectedK = k;
+        selectedVersion = solution.getVersion();
+    }
+}
@@ -3,6 +3,8 @@ package es.urjc.etsii.grafo.PSSC.model;
 import es.urjc.etsii.grafo.io.Instance;
 import es.urjc.etsii.grafo.util.collections.BitSet;
 
+import java.util.Arrays;
+
 public class PSSCInstance extends Instance {
 
     /**
@@ -20,37 +22,127 @@ public class PSSCInstance extends Instance {
      */
     private final BitSet[] coverage;
 
+    /**
+     * Coverage in CSR form: the points covered by set s are
+     * setPoints[setOffsets[s]] ... setPoints[setOffsets[s+1] - 1], in ascending order.
+     */
+    private final int[] setOffsets;
+
+    /**
+     * Concatenated point ids for every set, see {@link #setOffsets}.
+     */
+    private final int[] setPoints;
+
+    /**
+     * Inverted index in CSR form: the sets that cover point p are
+     * pointSets[pointOffsets[p]] ... pointSets[pointOffsets[p+1] - 1], in ascending order.
+     */
+    private final int[] pointOffsets;
+
+    /**
+     * Concatenated set ids for every point, see {@link #pointOffsets}.
+     */
+    private final int[] pointSets;
+
     /**
      * Which sets should not be added to the solution
      * because they either do not cover any point,
      * or there is always a better set that includes them.
+     * Of each group of identical sets, only the one with the lowest id is kept.
      */
     private final BitSet uselessSets;
 
+    /**
+     * Weight of each point, how many points of the original instance it represents.
+     * All weights are 1 unless the instance has been reduced, see {@link PSSCInstanceReducer}.
+     */
+    private final int[] pointWeights;
+
+    /**
+     * Minimum total weight of covered points for a solution to be feasible
+     */
+    private final int minCoveredRequired;
+
+    /**
+     * How this instance was derived from the original one, null if it has not been reduced
+     */
+    private final PSSCInstanceReducer.Reduction reduction;
+
+    private static final int[] NO_FIXED_SETS = new int[0];
 
     public PSSCInstance(int nSets, int nPoints, BitSet[] coverage, String name){
+        this(nSets, nPoints, coverage, null, null, null, null, name);
+    }
+
+    /**
+     * Builds an instance reusing data that has already been computed, for example by the parser,
+     * which reads the file point by point, or by the binary instance cache.
+     * Any null index argument is recomputed from coverage.
+     * @param pointOffsets offsets of the point -> sets index, of length nPoints + 1, or null
+     * @param pointSets set ids grouped by point, sorted in ascending order inside each point, or null
+     * @param uselessSets precomputed useless sets, or null
+     * @param reduction point weights, coverage requirement and id mapping of a reduced instance, or null if not reduced
+     */
+    PSSCInstance(int nSets, int nPoints, BitSet[] coverage, int[] pointOffsets, int[] pointSets, BitSet uselessSets, PSSCInstanceReducer.Reduction reduction, String name){
         super(name);
         this.nSets = nSets;
         this.nPoints = nPoints;
         this.coverage = coverage;
-        this.uselessSets = new BitSet(nSets);
-
-        for (int i = 0; i < nSets; i++) {
-            var set = coverage[i];
-            if (set.isEmpty()) {
-                uselessSets.add(i);
-            } else {
-                for (int j = 0; j < nSets; j++) {
-                    if(i != j && set.containsAll(coverage[j])) {
-                        uselessSets.add(j);
-                    }
+        this.reduction = reduction;
+        if (reduction == null) {
+            this.pointWeights = new int[nPoints];
+            Arrays.fill(pointWeights, 1);
+            this.minCoveredRequired = (int) Math.ceil(nPoints * PSSCSolution.MIN_COVERAGE);
+        } else {
+            this.pointWeights = reduction.pointWeights();
+            this.minCoveredRequired = reduction.minCoveredRequired();
+        }
+
+        // Build set -> points CSR from the BitSets
+        this.setOffsets = new int[nSets + 1];
+        for (int s = 0; s < nSets; s++) {
+            setOffsets[s + 1] = setOffsets[s] + coverage[s].size();
+        }
+        this.setPoints = new int[setOffsets[nSets]];
+        for (int s = 0; s < nSets; s++) {
+            int next = setOffsets[s];
+            for (int point : coverage[s]) {
+                setPoints[next++] = point;
+            }
+        }
+
+        if (pointOffsets == null || pointSets == null) {
+            // Build point -> sets index, counting degrees first and then filling each slice
+            pointOffsets = new int[nPoints + 1];
+            for (int point : setPoints) {
+                pointOffsets[point + 1]++;
+            }
+            for (int p = 0; p < nPoints; p++) {
+                pointOffsets[p + 1] += pointOffsets[p];
+            }
+            pointSets = new int[pointOffsets[nPoints]];
+            int[] next = new int[nPoints];
+            System.arraycopy(pointOffsets, 0, next, 0, nPoints);
+            for (int s = 0; s < nSets; s++) {
+                for (int i = setOffsets[s]; i < setOffsets[s + 1]; i++) {
+                    pointSets[next[setPoints[i]]++] = s;
                 }
             }
         }
+        this.pointOffsets = pointOffsets;
+        this.pointSets = pointSets;
+
+        if (uselessSets == null) {
+            uselessSets = SetDominance.findUselessSets(nSets, coverage, setOffsets, setPoints, this.pointOffsets, this.pointSets);
+        }
+        this.uselessSets = uselessSets;
 
         setProperty("nSets", nSets);
         setProperty("nPoints", nPoints);
         setProperty("nUselessSets", uselessSets.size());
+        if (reduction != null) {
+            setProperty("nFixedSets", reduction.fixedSets().length);
+        }
     }
 
 
@@ -99,6 +191,53 @@ public class PSSCInstance extends Instance {
         return coverage[set];
     }
 
+    /**
+     * Returns the offsets of the set -> points CSR. The points covered by set s are stored
+     * in {@link #getSetPoints()} between positions setOffsets[s] (inclusive) and setOffsets[s+1] (exclusive).
+     * The returned array must not be modified.
+     * @return offsets array, of length nSets + 1
+     */
+    public int[] getSetOffsets() {
+        return setOffsets;
+    }
+
+    /**
+     * Returns the concatenated point ids of the set -> points CSR, see {@link #getSetOffsets()}.
+     * The returned array must not be modified.
+     * @return point ids grouped by set
+     */
+    public int[] getSetPoints() {
+        return setPoints;
+    }
+
+    /**
+     * Returns the offsets of the point -> sets index. The sets covering point p are stored
+     * in {@link #getPointSets()} between positions pointOffsets[p] (inclusive) and pointOffsets[p+1] (exclusive).
+     * The returned array must not be modified.
+     * @return offsets array, of length nPoints + 1
+     */
+    public int[] getPointOffsets() {
+        return pointOffsets;
+    }
+
+    /**
+     * Returns the concatenated set ids of the point -> sets index, see {@link #getPointOffsets()}.
+     * The returned array must not be modified.
+     * @return set ids grouped by point
+     */
+    public int[] getPointSets() {
+        return pointSets;
+    }
+
+    /**
+     * Returns how many sets cover a given point
+     * @param point point id, 0 indexed.
+     * @return number of sets that cover the point
+     */
+    public int getPointDegree(int point) {
+        return pointOffsets[point + 1] - pointOffsets[point];
+    }
+
     /**
      * Returns a collection of sets that should not be added to the solution,
      * as there will always be better options.
@@ -107,4 +246,72 @@ public class PSSCInstance extends Instance {
     public BitSet getUselessSets() {
         return uselessSets;
     }
+
+    /**
+     * Returns the weight of each point, the number of points of the original instance it represents.
+     * The returned array must not be modified.
+     * @return point weights, all 1 if the instance has not been reduced
+     */
+    public int[] getPointWeights() {
+        return pointWeights;
+    }
+
+    /**
+     * Minimum total weight of covered points for a solution to be feasible
+     * @return required covered weight
+     */
+    public int getMinCoveredRequired() {
+        return minCoveredRequired;
+    }
+
+    /**
+     * Lower bound on the number of sets of a feasible solution, not counting the sets fixed by the instance reduction:
+     * the fewest sets whose weights add up to the required coverage, as if no two of them shared a point.
+     * @return minimum number of sets, or the number of sets plus one if even all of them cannot reach the required coverage
+     */
+    public int getSizeLowerBound() {
+        if (minCoveredRequired <= 0) {
+            return 0;
+        }
+        int[] setWeights = new int[nSets];
+        for (int set = 0; set < nSets; set++) {
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                setWeights[set] += pointWeights[setPoints[i]];
+            }
+        }
+        Arrays.sort(setWeights);
+        long covered = 0;
+        for (int n = 1; n <= nSets; n++) {
+            covered += setWeights[nSets - n];
+            if (covered >= minCoveredRequired) {
+                return n;
+            }
+        }
+        return nSets + 1;
+    }
+
+    /**
+     * Returns how this instance was derived from the original one
+     * @return reduction data, or null if this instance has not been reduced
+     */
+    public PSSCInstanceReducer.Reduction getReduction() {
+        return reduction;
+    }
+
+    /**
+     * Sets of the original instance that every solution of this instance implicitly contains
+     * @return original set ids, empty if the instance has not been reduced
+     */
+    public int[] getFixedSets() {
+        return reduction == null ? NO_FIXED_SETS : reduction.fixedSets();
+    }
+
+    /**
+     * Translate a set id of this instance to the id of the same set in the original instance
+     * @param set set id in this instance
+     * @return set id in the original instance
+     */
+    public int getOriginalSetId(int set) {
+        return reduction == null ? set : reduction.originalSetIds()[set];
+    }
 }
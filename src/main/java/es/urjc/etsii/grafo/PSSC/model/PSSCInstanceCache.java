@@ -0,0 +1,336 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary cache of preprocessed instances, so large experiment batches do not pay
+ * text parsing, the useless set detection and the instance reduction on every launch.
+ * <p>
+ * Layout of the original instance, little endian:
+ * <pre>
+ *   long magic, int version
+ *   long source size, long source CRC32C     # detects stale caches
+ *   int nSets, int nPoints, int nnz, int nUseless
+ *   int[nSets + 1] setOffsets,   int[nnz] setPoints     # coverage, CSR
+ *   int[nPoints + 1] pointOffsets, int[nnz] pointSets   # inverted index, CSR
+ *   int[nUseless] uselessSets
+ * </pre>
+ * The reduced instance, see {@link PSSCInstanceReducer}, is stored in a second file checked against the same source,
+ * as it refers to the original instance:
+ * <pre>
+ *   long magic, int version
+ *   long source size, long source CRC32C
+ *   int reduced                              # 0 if the reduction left the instance unchanged, nothing follows
+ *   int nSets, int nPoints, int nnz, int nUseless
+ *   int nFixed, int minCoveredRequired
+ *   same coverage, inverted index and useless sets as above
+ *   int[nSets] originalSetIds, int[nFixed] fixedSets, int[nPoints] pointWeights
+ * </pre>
+ * Cache files are stored in {@link #CACHE_FOLDER} instead of the instance folder,
+ * as every file inside the instance folder is treated as an instance by the framework.
+ */
+final class PSSCInstanceCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PSSCInstanceCache.class);
+
+    /**
+     * Folder where cache files are stored, relative to the working directory
+     */
+    static final Path CACHE_FOLDER = Path.of("cache");
+
+    private static final long MAGIC = 0x5053534343414348L; // "PSSCCACH"
+
+    /**
+     * Increase when the layout or the instance preprocessing changes, invalidating old caches
+     */
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 8 + 4 + 8 + 8 + 4 * 4;
+
+    private static final int REDUCED_HEADER_BYTES = 8 + 4 + 8 + 8 + 4;
+
+    private PSSCInstanceCache() {}
+
+    /**
+     * Load an instance from its cache if it exists and is up to date, or import the text file and create the cache.
+     * Failing to write the cache is not an error, the instance is returned anyway.
+     * @param source instance text file
+     * @param importer importer used on cache misses
+     * @param reduce true to return the reduced instance, cached separately
+     * @return loaded instance
+     * @throws IOException if the instance file cannot be read
+     */
+    static PSSCInstance load(Path source, PSSCInstanceImporter importer, boolean reduce) throws IOException {
+        String name = source.getFileName().toString();
+        long size = Files.size(source);
+        long hash = contentHash(source);
+        Path cacheFile = CACHE_FOLDER.resolve(name + ".bin");
+
+        var instance = read(cacheFile, size, hash, name);
+        if (instance != null) {
+            log.debug("Loaded instance {} from cache {}", name, cacheFile);
+        } else {
+            instance = importer.importMapped(source);
+            try {
+                write(cacheFile, size, hash, instance);
+                log.debug("Created cache {} for instance {}", cacheFile, name);
+            } catch (IOException e) {
+                log.warn("Could not write instance cache {}: {}", cacheFile, e.getMessage());
+            }
+        }
+        if (!reduce) {
+            return instance;
+        }
+
+        Path reducedFile = CACHE_FOLDER.resolve(name + ".reduced.bin");
+        var reduced = readReduced(reducedFile, size, hash, instance);
+        if (reduced != null) {
+            log.debug("Loaded reduced instance {} from cache {}", name, reducedFile);
+            return reduced;
+        }
+        reduced = PSSCInstanceReducer.reduce(instance);
+        try {
+            writeReduced(reducedFile, size, hash, reduced);
+            log.debug("Created cache {} for reduced instance {}", reducedFile, name);
+        } catch (IOException e) {
+            log.warn("Could not write instance cache {}: {}", reducedFile, e.getMessage());
+        }
+        return reduced;
+    }
+
+    /**
+     * CRC32C of the file contents, computed over a memory mapping of the file
+     */
+    static long contentHash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var crc = new CRC32C();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Read a cache file
+     * @return the cached instance, or null if the cache does not exist, is stale or is corrupted
+     */
+    static PSSCInstance read(Path cacheFile, long sourceSize, long sourceHash, String name) throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != sourceSize || buffer.getLong() != sourceHash) {
+                log.debug("Ignoring stale or foreign cache {}", cacheFile);
+                return null;
+            }
+            int nSets = buffer.getInt();
+            int nPoints = buffer.getInt();
+            int nnz = buffer.getInt();
+            int nUseless = buffer.getInt();
+            long expectedSize = HEADER_BYTES + 4L * ((nSets + 1) + nnz + (nPoints + 1) + nnz + nUseless);
+            if (nSets < 0 || nPoints < 0 || nnz < 0 || nUseless < 0 || fileSize != expectedSize) {
+                log.warn("Ignoring corrupted cache {}", cacheFile);
+                return null;
+            }
+
+            return readInstance(buffer.asIntBuffer(), nSets, nPoints, nnz, nUseless, null, name);
+        } catch (IndexOutOfBoundsException e) {
+            log.warn("Ignoring corrupted cache {}", cacheFile);
+            return null;
+        }
+    }
+
+    /**
+     * Read a reduced cache file
+     * @param original original instance the reduced one refers to
+     * @return the cached reduced instance, the original one if the reduction left it unchanged,
+     * or null if the cache does not exist, is stale or is corrupted
+     */
+    static PSSCInstance readReduced(Path cacheFile, long sourceSize, long sourceHash, PSSCInstance original) throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < REDUCED_HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != sourceSize || buffer.getLong() != sourceHash) {
+                log.debug("Ignoring stale or foreign cache {}", cacheFile);
+                return null;
+            }
+            int reduced = buffer.getInt();
+            if (reduced == 0 && fileSize == REDUCED_HEADER_BYTES) {
+                return original;
+            }
+            if (reduced != 1 || fileSize < REDUCED_HEADER_BYTES + 4L * 6) {
+                log.warn("Ignoring corrupted cache {}", cacheFile);
+                return null;
+            }
+            int nSets = buffer.getInt();
+            int nPoints = buffer.getInt();
+            int nnz = buffer.getInt();
+            int nUseless = buffer.getInt();
+            int nFixed = buffer.getInt();
+            int minCoveredRequired = buffer.getInt();
+            long expectedSize = REDUCED_HEADER_BYTES + 4L * 6
+                    + 4L * ((nSets + 1) + nnz + (nPoints + 1) + nnz + nUseless + nSets + nFixed + nPoints);
+            if (nSets < 0 || nPoints < 0 || nnz < 0 || nUseless < 0 || nFixed < 0 || fileSize != expectedSize) {
+                log.warn("Ignoring corrupted cache {}", cacheFile);
+                return null;
+            }
+
+            IntBuffer ints = buffer.asIntBuffer();
+            int[] originalSetIds = new int[nSets];
+            int[] fixedSets = new int[nFixed];
+            int[] pointWeights = new int[nPoints];
+            // The reduction data follows the instance data, skip it first
+            ints.position((nSets + 1) + nnz + (nPoints + 1) + nnz + nUseless);
+            ints.get(originalSetIds).get(fixedSets).get(pointWeights);
+            ints.position(0);
+            var reduction = new PSSCInstanceReducer.Reduction(original, originalSetIds, fixedSets, pointWeights, minCoveredRequired);
+            return readInstance(ints, nSets, nPoints, nnz, nUseless, reduction, original.getId());
+        } catch (IndexOutOfBoundsException e) {
+            log.warn("Ignoring corrupted cache {}", cacheFile);
+            return null;
+        }
+    }
+
+    /**
+     * Read the coverage, inverted index and useless sets of an instance, and build it
+     */
+    private static PSSCInstance readInstance(IntBuffer ints, int nSets, int nPoints, int nnz, int nUseless,
+                                             PSSCInstanceReducer.Reduction reduction, String name) {
+        int[] setOffsets = new int[nSets + 1];
+        int[] setPoints = new int[nnz];
+        int[] pointOffsets = new int[nPoints + 1];
+        int[] pointSets = new int[nnz];
+        int[] useless = new int[nUseless];
+        ints.get(setOffsets).get(setPoints).get(pointOffsets).get(pointSets).get(useless);
+
+        BitSet[] coverage = new BitSet[nSets];
+        for (int s = 0; s < nSets; s++) {
+            coverage[s] = new BitSet(nPoints);
+            for (int i = setOffsets[s]; i < setOffsets[s + 1]; i++) {
+                coverage[s].add(setPoints[i]);
+            }
+        }
+        BitSet uselessSets = new BitSet(nSets);
+        for (int set : useless) {
+            uselessSets.add(set);
+        }
+        return new PSSCInstance(nSets, nPoints, coverage, pointOffsets, pointSets, uselessSets, reduction, name);
+    }
+
+    /**
+     * Write a cache file. The file is written to a temporary file first and then moved,
+     * so concurrent runs never see a partially written cache.
+     */
+    static void write(Path cacheFile, long sourceSize, long sourceHash, PSSCInstance instance) throws IOException {
+        int[] useless = uselessSets(instance);
+        ByteBuffer buffer = allocate(HEADER_BYTES + 4L * instanceInts(instance, useless));
+        buffer.putLong(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceHash);
+        buffer.putInt(instance.getnSets()).putInt(instance.getnPoints()).putInt(instance.getSetPoints().length).putInt(useless.length);
+        putInstance(buffer.asIntBuffer(), instance, useless);
+        buffer.position(0);
+        moveInPlace(cacheFile, buffer);
+    }
+
+    /**
+     * Write a reduced cache file, see {@link #write(Path, long, long, PSSCInstance)}
+     * @param reduced reduced instance, or the original one if the reduction left it unchanged
+     */
+    static void writeReduced(Path cacheFile, long sourceSize, long sourceHash, PSSCInstance reduced) throws IOException {
+        var reduction = reduced.getReduction();
+        if (reduction == null) {
+            ByteBuffer buffer = allocate(REDUCED_HEADER_BYTES);
+            buffer.putLong(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceHash).putInt(0);
+            buffer.position(0);
+            moveInPlace(cacheFile, buffer);
+            return;
+        }
+        int[] useless = uselessSets(reduced);
+        int[] originalSetIds = reduction.originalSetIds();
+        int[] fixedSets = reduction.fixedSets();
+        int[] pointWeights = reduction.pointWeights();
+        ByteBuffer buffer = allocate(REDUCED_HEADER_BYTES + 4L * 6
+                + 4L * (instanceInts(reduced, useless) + originalSetIds.length + fixedSets.length + pointWeights.length));
+        buffer.putLong(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceHash).putInt(1);
+        buffer.putInt(reduced.getnSets()).putInt(reduced.getnPoints()).putInt(reduced.getSetPoints().length).putInt(useless.length);
+        buffer.putInt(fixedSets.length).putInt(reduction.minCoveredRequired());
+        putInstance(buffer.asIntBuffer(), reduced, useless).put(originalSetIds).put(fixedSets).put(pointWeights);
+        buffer.position(0);
+        moveInPlace(cacheFile, buffer);
+    }
+
+    private static int[] uselessSets(PSSCInstance instance) {
+        var uselessSets = instance.getUselessSets();
+        int[] useless = new int[uselessSets.size()];
+        int i = 0;
+        for (int set : uselessSets) {
+            useless[i++] = set;
+        }
+        return useless;
+    }
+
+    /**
+     * Number of ints written by {@link #putInstance(IntBuffer, PSSCInstance, int[])}
+     */
+    private static long instanceInts(PSSCInstance instance, int[] useless) {
+        return (long) instance.getSetOffsets().length + instance.getSetPoints().length
+                + instance.getPointOffsets().length + instance.getPointSets().length + useless.length;
+    }
+
+    private static IntBuffer putInstance(IntBuffer ints, PSSCInstance instance, int[] useless) {
+        return ints.put(instance.getSetOffsets()).put(instance.getSetPoints())
+                .put(instance.getPointOffsets()).put(instance.getPointSets()).put(useless);
+    }
+
+    private static ByteBuffer allocate(long totalBytes) throws IOException {
+        if (totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("Instance too large to cache: " + totalBytes + " bytes");
+        }
+        return ByteBuffer.allocate((int) totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write the buffer to a temporary file next to the cache file, then move it in place
+     */
+    private static void moveInPlace(Path cacheFile, ByteBuffer buffer) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path tmp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
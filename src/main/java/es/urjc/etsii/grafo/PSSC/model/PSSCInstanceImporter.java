@@ -1,12 +1,13 @@
 package es.urjc.etsii.grafo.PSSC.model;
 
 import es.urjc.etsii.grafo.io.InstanceImporter;
-import es.urjc.etsii.grafo.util.collections.BitSet;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Loads OR‑Library SCP / PSCP instances.
@@ -18,45 +19,67 @@ import java.util.Scanner;
  *       k_p             # sets covering point p
  *       s1 … s_kp       # 1‑based column indices (may wrap lines)
  * </pre>
+ * Parsing is delegated to {@link PSSCInstanceParser}. Imported instances are reduced
+ * with {@link PSSCInstanceReducer} unless disabled.
  */
 @Service
 public class PSSCInstanceImporter
         extends InstanceImporter<PSSCInstance> {
 
+    /**
+     * Whether imported instances are reduced before being returned
+     */
+    private final boolean reduce;
+
+    public PSSCInstanceImporter() {
+        this(true);
+    }
+
+    /**
+     * @param reduce true to reduce imported instances, false to return them as they are in the file
+     */
+    public PSSCInstanceImporter(boolean reduce) {
+        this.reduce = reduce;
+    }
+
+    /**
+     * Import an instance given its path. Uncompressed text instances go through the binary
+     * cache ({@link PSSCInstanceCache}), which also keeps their reduced version, any other file is delegated to the framework.
+     * @param path path to the instance file
+     * @return loaded instance
+     */
+    @Override
+    public PSSCInstance importInstance(String path) {
+        var file = Path.of(path);
+        if (!path.endsWith(".txt") || !Files.isRegularFile(file)) {
+            return super.importInstance(path);
+        }
+        try {
+            var instance = PSSCInstanceCache.load(file, this, reduce);
+            instance.setPath(path);
+            return instance;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error importing instance " + path, e);
+        }
+    }
+
     /** Framework‑required method (BufferedReader + filename). */
     @Override
     public PSSCInstance importInstance(BufferedReader reader, String filename)
             throws IOException {
+        var instance = PSSCInstanceParser.parse(reader, filename).toInstance(filename);
+        return reduce ? PSSCInstanceReducer.reduce(instance) : instance;
+    }
 
-        try (Scanner sc = new Scanner(reader)) {
-
-            /* ---------- 1. header ------------------------------------------ */
-            int nPoints = sc.nextInt();   // m (rows)
-            int nSets   = sc.nextInt();   // n (columns)
-
-            /* ---------- 2. skip cost vector (unicost instances) ------------ */
-            for (int i = 0; i < nSets; i++) sc.nextInt();
-
-            /* ---------- 3. init coverage array ----------------------------- */
-            BitSet[] coverage = new BitSet[nSets];
-            for (int s = 0; s < nSets; s++) {
-                coverage[s] = new BitSet(nPoints);
-            }
-
-            /* ---------- 4. read point blocks ------------------------------- */
-            for (int p = 0; p < nPoints; p++) {
-                if (!sc.hasNextInt()) {
-                    throw new IOException("Unexpected EOF at point " + p +
-                            " in instance " + filename);
-                }
-                int k = sc.nextInt();                // sets covering point p
-                for (int h = 0; h < k; h++) {
-                    int setIdx = sc.nextInt() - 1;   // 1‑based → 0‑based
-                    coverage[setIdx].add(p);
-                }
-            }
-
-            return new PSSCInstance(nSets, nPoints, coverage, filename);
-        }
+    /**
+     * Import an instance by memory-mapping the file, skipping the character decoding done by readers.
+     * The instance is never reduced.
+     * @param path path to the instance file
+     * @return loaded instance
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public PSSCInstance importMapped(Path path) throws IOException {
+        String filename = path.getFileName().toString();
+        return PSSCInstanceParser.parse(path).toInstance(filename);
     }
 }
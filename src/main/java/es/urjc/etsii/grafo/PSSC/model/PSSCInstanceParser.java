@@ -0,0 +1,283 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hand-written tokenizer for OR‑Library SCP / PSCP files, see {@link PSSCInstanceImporter} for the format.
+ * <p>
+ * Integers are decoded directly from a reusable buffer, without regex matching, boxing or
+ * per token String allocation. As the file lists, for each point, the sets that cover it,
+ * the point -> sets index is built while reading, and the per set coverage BitSets are filled in the same pass.
+ */
+public final class PSSCInstanceParser {
+
+    /**
+     * Size of the reusable buffer the tokenizer reads from
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Returned by the tokenizer when there are no more integers to read
+     */
+    private static final int EOF = -1;
+
+    private PSSCInstanceParser() {}
+
+    /**
+     * Parse an instance by memory-mapping the whole file.
+     * @param path path to the instance file
+     * @return parsed instance data
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static ParsedInstance parse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(new MappedSource(buffer), path.getFileName().toString());
+        }
+    }
+
+    /**
+     * Parse an instance from a channel, using a reusable byte buffer.
+     * @param channel channel to read from, not closed by this method
+     * @param name instance name, used in error messages
+     * @return parsed instance data
+     * @throws IOException if the channel cannot be read or the data is malformed
+     */
+    public static ParsedInstance parse(ReadableByteChannel channel, String name) throws IOException {
+        return parse(new ChannelSource(channel), name);
+    }
+
+    /**
+     * Parse an instance from a character stream, using a reusable char buffer.
+     * Used by the framework import path, which only provides a reader.
+     * @param reader reader to read from, not closed by this method
+     * @param name instance name, used in error messages
+     * @return parsed instance data
+     * @throws IOException if the reader fails or the data is malformed
+     */
+    public static ParsedInstance parse(Reader reader, String name) throws IOException {
+        return parse(new ReaderSource(reader), name);
+    }
+
+    private static ParsedInstance parse(Source source, String name) throws IOException {
+        /* ---------- 1. header ---------------------------------------------- */
+        int nPoints = expectInt(source, "number of points", name);   // m (rows)
+        int nSets   = expectInt(source, "number of sets", name);     // n (columns)
+
+        /* ---------- 2. skip cost vector (unicost instances) ---------------- */
+        for (int i = 0; i < nSets; i++) {
+            if (source.nextInt() == EOF) {
+                throw new IOException("Unexpected EOF while reading cost of set " + i + " in instance " + name);
+            }
+        }
+
+        /* ---------- 3. init coverage and index arrays ---------------------- */
+        BitSet[] coverage = new BitSet[nSets];
+        for (int s = 0; s < nSets; s++) {
+            coverage[s] = new BitSet(nPoints);
+        }
+        int[] pointOffsets = new int[nPoints + 1];
+        int[] pointSets = new int[Math.max(16, nPoints * 4)];
+        int size = 0;
+
+        /* ---------- 4. read point blocks ----------------------------------- */
+        for (int p = 0; p < nPoints; p++) {
+            int k = source.nextInt();                       // sets covering point p
+            if (k == EOF) {
+                throw new IOException("Unexpected EOF at point " + p + " in instance " + name);
+            }
+            if (size + k > pointSets.length) {
+                pointSets = Arrays.copyOf(pointSets, Math.max(size + k, pointSets.length * 2));
+            }
+            int start = size;
+            boolean sorted = true;
+            for (int h = 0; h < k; h++) {
+                int setIdx = source.nextInt() - 1;          // 1‑based → 0‑based
+                if (setIdx < 0 || setIdx >= nSets) {
+                    throw new IOException("Invalid set index " + (setIdx + 1) + " at point " + p + " in instance " + name);
+                }
+                if (size > start && pointSets[size - 1] >= setIdx) {
+                    sorted = false;
+                }
+                pointSets[size++] = setIdx;
+            }
+            if (!sorted) {
+                // Keep each slice ascending and without repeated sets
+                Arrays.sort(pointSets, start, size);
+                int write = start;
+                for (int read = start; read < size; read++) {
+                    if (write == start || pointSets[write - 1] != pointSets[read]) {
+                        pointSets[write++] = pointSets[read];
+                    }
+                }
+                size = write;
+            }
+            for (int i = start; i < size; i++) {
+                coverage[pointSets[i]].add(p);
+            }
+            pointOffsets[p + 1] = size;
+        }
+
+        return new ParsedInstance(nSets, nPoints, coverage, pointOffsets, Arrays.copyOf(pointSets, size));
+    }
+
+    private static int expectInt(Source source, String what, String name) throws IOException {
+        int value = source.nextInt();
+        if (value == EOF) {
+            throw new IOException("Unexpected EOF while reading " + what + " in instance " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Raw data read from an instance file, before any preprocessing.
+     * @param nSets number of sets
+     * @param nPoints number of points
+     * @param coverage for each set, which points does it cover
+     * @param pointOffsets offsets of the point -> sets index
+     * @param pointSets set ids grouped by point
+     */
+    public record ParsedInstance(int nSets, int nPoints, BitSet[] coverage, int[] pointOffsets, int[] pointSets) {
+
+        /**
+         * Build the instance, running the instance preprocessing
+         * @param name instance name
+         * @return instance
+         */
+        public PSSCInstance toInstance(String name) {
+            return new PSSCInstance(nSets, nPoints, coverage, pointOffsets, pointSets, null, null, name);
+        }
+    }
+
+    /**
+     * Character source. Integers are non-negative decimal numbers separated by whitespace.
+     */
+    private abstract static class Source {
+
+        /**
+         * Read the next character
+         * @return next character, or EOF if there are no more characters
+         * @throws IOException if the underlying source fails
+         */
+        abstract int read() throws IOException;
+
+        /**
+         * Read the next integer
+         * @return next integer, or EOF if only whitespace remains
+         * @throws IOException if the underlying source fails or the token is not an integer
+         */
+        final int nextInt() throws IOException {
+            int c = read();
+            while (c != EOF && c <= ' ') {
+                c = read();
+            }
+            if (c == EOF) {
+                return EOF;
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Unexpected character '" + (char) c + "', expected an integer");
+            }
+            int value = 0;
+            do {
+                value = value * 10 + (c - '0');
+                c = read();
+            } while (c >= '0' && c <= '9');
+            if (c != EOF && c > ' ') {
+                throw new IOException("Unexpected character '" + (char) c + "' after integer " + value);
+            }
+            return value;
+        }
+    }
+
+    private static final class MappedSource extends Source {
+        private final ByteBuffer buffer;
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+
+        MappedSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        int read() {
+            if (position == limit) {
+                // Bulk copy chunks from the mapping, much faster than a get() call per byte
+                int n = Math.min(bytes.length, buffer.remaining());
+                if (n == 0) {
+                    return EOF;
+                }
+                buffer.get(bytes, 0, n);
+                position = 0;
+                limit = n;
+            }
+            return bytes[position++] & 0xFF;
+        }
+    }
+
+    private static final class ChannelSource extends Source {
+        private final ReadableByteChannel channel;
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private int position = 0;
+        private int limit = 0;
+
+        ChannelSource(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (position == limit) {
+                buffer.clear();
+                int n;
+                do {
+                    n = channel.read(buffer);
+                } while (n == 0);
+                if (n < 0) {
+                    return EOF;
+                }
+                position = 0;
+                limit = n;
+            }
+            return bytes[position++] & 0xFF;
+        }
+    }
+
+    private static final class ReaderSource extends Source {
+        private final Reader reader;
+        private final char[] chars = new char[BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+
+        ReaderSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (position == limit) {
+                int n;
+                do {
+                    n = reader.read(chars, 0, chars.length);
+                } while (n == 0);
+                if (n < 0) {
+                    return EOF;
+                }
+                position = 0;
+                limit = n;
+            }
+            return chars[position++];
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Reduces an instance before solving it. Each round:
+ * <ol>
+ *     <li>Removes useless sets: empty, duplicated or dominated by another set.</li>
+ *     <li>Fixes forced sets: sets whose uniquely covered points are needed to reach the coverage requirement.
+ *     Their points are removed, and the requirement is lowered accordingly.</li>
+ *     <li>Removes points that no remaining set covers.</li>
+ *     <li>Collapses points covered by exactly the same sets into a single weighted point.</li>
+ * </ol>
+ * Rounds are repeated until the instance does not change. The reduced instance keeps the
+ * mapping to the original set ids, see {@link PSSCSolution#getOriginalSets()}.
+ */
+public final class PSSCInstanceReducer {
+
+    private static final Logger log = LoggerFactory.getLogger(PSSCInstanceReducer.class);
+
+    private PSSCInstanceReducer() {}
+
+    /**
+     * How a reduced instance relates to the original one
+     * @param original original instance
+     * @param originalSetIds for each set of the reduced instance, its id in the original instance
+     * @param fixedSets original ids of the sets that are part of every solution
+     * @param pointWeights for each point of the reduced instance, how many original points it represents
+     * @param minCoveredRequired covered weight required in the reduced instance
+     */
+    public record Reduction(PSSCInstance original, int[] originalSetIds, int[] fixedSets, int[] pointWeights, int minCoveredRequired) {}
+
+    /**
+     * Reduce an instance
+     * @param original instance to reduce
+     * @return reduced instance, with the same name as the original
+     */
+    public static PSSCInstance reduce(PSSCInstance original) {
+        var current = original;
+        int[] originalSetIds = new int[original.getnSets()];
+        Arrays.setAll(originalSetIds, i -> i);
+        int[] fixedSets = new int[0];
+        int rounds = 0;
+
+        while (true) {
+            int nSets = current.getnSets();
+            int nPoints = current.getnPoints();
+            int[] pointOffsets = current.getPointOffsets();
+            int[] pointSets = current.getPointSets();
+            int[] weights = current.getPointWeights();
+            int required = current.getMinCoveredRequired();
+            var useless = current.getUselessSets();
+
+            // 1. Keep sets that are not useless, and count for each point how many kept sets cover it
+            boolean[] keep = new boolean[nSets];
+            for (int s = 0; s < nSets; s++) {
+                keep[s] = !useless.contains(s);
+            }
+            int[] degree = new int[nPoints];
+            int[] owner = new int[nPoints];
+            long coverable = 0;
+            for (int p = 0; p < nPoints; p++) {
+                for (int i = pointOffsets[p]; i < pointOffsets[p + 1]; i++) {
+                    int s = pointSets[i];
+                    if (keep[s]) {
+                        degree[p]++;
+                        owner[p] = s;
+                    }
+                }
+                if (degree[p] > 0) {
+                    coverable += weights[p];
+                }
+            }
+
+            // 2. A set is forced if without its uniquely covered points the requirement cannot be met
+            long[] unique = new long[nSets];
+            for (int p = 0; p < nPoints; p++) {
+                if (degree[p] == 1) {
+                    unique[owner[p]] += weights[p];
+                }
+            }
+            boolean[] forced = new boolean[nSets];
+            if (coverable >= required) {
+                for (int s = 0; s < nSets; s++) {
+                    forced[s] = keep[s] && unique[s] > 0 && coverable - unique[s] < required;
+                }
+            }
+
+            // 3. Remove points covered by forced sets, and points no kept set covers
+            boolean[] removedPoint = new boolean[nPoints];
+            int newRequired = required;
+            for (int p = 0; p < nPoints; p++) {
+                if (degree[p] == 0) {
+                    removedPoint[p] = true;
+                    continue;
+                }
+                for (int i = pointOffsets[p]; i < pointOffsets[p + 1]; i++) {
+                    if (forced[pointSets[i]]) {
+                        removedPoint[p] = true;
+                        newRequired -= weights[p];
+                        break;
+                    }
+                }
+            }
+            newRequired = Math.max(0, newRequired);
+
+            int[] newSetId = new int[nSets];
+            int[] newOriginalSetIds = new int[nSets];
+            int newNSets = 0;
+            for (int s = 0; s < nSets; s++) {
+                if (forced[s]) {
+                    fixedSets = Arrays.copyOf(fixedSets, fixedSets.length + 1);
+                    fixedSets[fixedSets.length - 1] = originalSetIds[s];
+                }
+                if (keep[s] && !forced[s]) {
+                    newSetId[s] = newNSets;
+                    newOriginalSetIds[newNSets++] = originalSetIds[s];
+                } else {
+                    newSetId[s] = -1;
+                }
+            }
+
+            // 4. Collapse points covered by the same sets, comparing their lists of remaining sets
+            int[] listOffsets = new int[nPoints + 1];
+            int[] lists = new int[pointSets.length];
+            int size = 0;
+            for (int p = 0; p < nPoints; p++) {
+                if (!removedPoint[p]) {
+                    for (int i = pointOffsets[p]; i < pointOffsets[p + 1]; i++) {
+                        int s = newSetId[pointSets[i]];
+                        if (s >= 0) {
+                            lists[size++] = s;
+                        }
+                    }
+                }
+                listOffsets[p + 1] = size;
+            }
+            int[] newPointId = new int[nPoints];
+            int[] representativeOf = new int[nPoints];
+            int[] newWeights = new int[nPoints];
+            int newNPoints = 0;
+            int merged = 0;
+            var groups = new HashMap<Integer, int[]>();
+            for (int p = 0; p < nPoints; p++) {
+                if (removedPoint[p]) {
+                    newPointId[p] = -1;
+                    continue;
+                }
+                int hash = 1;
+                for (int i = listOffsets[p]; i < listOffsets[p + 1]; i++) {
+                    hash = 31 * hash + lists[i];
+                }
+                int[] group = groups.get(hash);
+                int same = -1;
+                if (group != null) {
+                    for (int q : group) {
+                        if (Arrays.equals(lists, listOffsets[q], listOffsets[q + 1], lists, listOffsets[p], listOffsets[p + 1])) {
+                            same = q;
+                            break;
+                        }
+                    }
+                }
+                if (same >= 0) {
+                    newPointId[p] = newPointId[same];
+                    newWeights[newPointId[p]] += weights[p];
+                    merged++;
+                } else {
+                    newPointId[p] = newNPoints;
+                    representativeOf[newNPoints] = p;
+                    newWeights[newNPoints++] = weights[p];
+                    int[] extended = group == null ? new int[1] : Arrays.copyOf(group, group.length + 1);
+                    extended[extended.length - 1] = p;
+                    groups.put(hash, extended);
+                }
+            }
+
+            if (newNSets == nSets && newNPoints == nPoints) {
+                // Nothing changed, no useless or forced sets, no removed or merged points
+                break;
+            }
+            rounds++;
+
+            BitSet[] coverage = new BitSet[newNSets];
+            for (int s = 0; s < newNSets; s++) {
+                coverage[s] = new BitSet(newNPoints);
+            }
+            for (int q = 0; q < newNPoints; q++) {
+                int p = representativeOf[q];
+                for (int i = listOffsets[p]; i < listOffsets[p + 1]; i++) {
+                    coverage[lists[i]].add(q);
+                }
+            }
+
+            originalSetIds = Arrays.copyOf(newOriginalSetIds, newNSets);
+            var reduction = new Reduction(original, originalSetIds, fixedSets, Arrays.copyOf(newWeights, newNPoints), newRequired);
+            log.debug("Reduction round {} of {}: sets {} -> {}, points {} -> {} ({} merged), {} fixed sets, required {} -> {}",
+                    rounds, original.getId(), nSets, newNSets, nPoints, newNPoints, merged, fixedSets.length, required, newRequired);
+            current = new PSSCInstance(newNSets, newNPoints, coverage, null, null, null, reduction, original.getId());
+        }
+
+        if (rounds > 0) {
+            log.info("Reduced instance {}: sets {} -> {}, points {} -> {}, {} fixed sets, required coverage {} -> {}",
+                    original.getId(), original.getnSets(), current.getnSets(), original.getnPoints(), current.getnPoints(),
+                    fixedSets.length, original.getMinCoveredRequired(), current.getMinCoveredRequired());
+        }
+        return current;
+    }
+}
@@ -3,6 +3,8 @@ package es.urjc.etsii.grafo.PSSC.model;
 import es.urjc.etsii.grafo.solution.Solution;
 import es.urjc.etsii.grafo.util.collections.BitSet;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
@@ -13,7 +15,8 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
     public static final double MIN_COVERAGE = 0.9;
 
     /**
-     * Minimum number of points that must be covered to be considered feasible.
+     * Minimum total weight of covered points to be considered feasible.
+     * Equals the number of points unless the instance has been reduced.
      */
     final int minCoveredRequired;
 
@@ -27,11 +30,113 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
      */
     int[] coverCount;
 
+    /**
+     * Total weight of the covered points, updated by {@link #addSet(int)} and {@link #removeSet(int)}
+     */
+    int nCovered;
+
+    /**
+     * Uncovered points, stored as an indexed sparse set: the first nUncovered positions
+     * contain the uncovered points in no particular order.
+     */
+    int[] uncovered;
+
+    /**
+     * Position of each point inside {@link #uncovered}, or -1 if the point is covered
+     */
+    int[] uncoveredIndex;
+
+    /**
+     * Number of uncovered points
+     */
+    int nUncovered;
+
+    /**
+     * For each set, weight of the uncovered points it covers: what adding the set would gain.
+     * Always 0 for chosen sets.
+     */
+    int[] gain;
+
+    /**
+     * For each chosen set, weight of the points covered only by it: what removing the set would lose.
+     * Always 0 for sets not in the solution.
+     */
+    int[] uniqueCoverage;
+
+    /**
+     * For each set, weight of its points covered by at most one chosen set.
+     * Used to rank the sets that could be swapped in, see {@link CandidateList}.
+     */
+    int[] weakCoverage;
+
+    /**
+     * Incremented on every set addition or removal
+     */
+    int version;
+
+    /**
+     * Candidate sets to add, created on first use and never shared between solutions
+     */
+    private CandidateList candidateList;
+
+    /**
+     * Covered points, only rebuilt when requested after a change, see {@link #coveredPoints()}
+     */
+    private BitSet coveredPoints;
+
+    private boolean coveredPointsValid;
+
+    /**
+     * Undo log of set additions and removals made since the oldest open checkpoint:
+     * set + 1 for an addition, -(set + 1) for a removal. Only written while a checkpoint is open.
+     */
+    private int[] trail = new int[16];
+
+    private int trailSize;
+
+    /**
+     * Trail size when each checkpoint that has not been rolled back or committed yet was taken, innermost last
+     */
+    private int[] checkpoints = new int[4];
+
+    /**
+     * Number of checkpoints that have not been rolled back or committed yet
+     */
+    private int openCheckpoints;
+
+    /**
+     * Time accounting of the k levels searched by the run that returned this solution, as CSV rows.
+     * Empty unless set by the algorithm, see {@link #setLevelReports(List)}.
+     */
+    private List<String> levelReports = List.of();
+
     public PSSCSolution(PSSCInstance instance) {
         super(instance);
+        int nPoints = instance.getnPoints();
         this.chosenSets = new BitSet(instance.getnSets());
-        this.minCoveredRequired = (int) Math.ceil(instance.getnPoints() * MIN_COVERAGE);
-        this.coverCount = new int[instance.getnPoints()];
+        this.minCoveredRequired = instance.getMinCoveredRequired();
+        this.coverCount = new int[nPoints];
+        this.nCovered = 0;
+        this.uncovered = new int[nPoints];
+        this.uncoveredIndex = new int[nPoints];
+        for (int p = 0; p < nPoints; p++) {
+            uncovered[p] = p;
+            uncoveredIndex[p] = p;
+        }
+        this.nUncovered = nPoints;
+        // Nothing is covered, every set gains all its points
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] weights = instance.getPointWeights();
+        this.gain = new int[instance.getnSets()];
+        for (int set = 0; set < gain.length; set++) {
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                gain[set] += weights[setPoints[i]];
+            }
+        }
+        this.uniqueCoverage = new int[instance.getnSets()];
+        // Every point is uncovered, so every point is weak
+        this.weakCoverage = gain.clone();
     }
 
     public PSSCSolution(PSSCSolution solution) {
@@ -39,14 +144,24 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
         this.chosenSets = solution.chosenSets.clone();
         this.minCoveredRequired = solution.minCoveredRequired;
         this.coverCount = solution.coverCount.clone();
+        this.nCovered = solution.nCovered;
+        this.uncovered = solution.uncovered.clone();
+        this.uncoveredIndex = solution.uncoveredIndex.clone();
+        this.nUncovered = solution.nUncovered;
+        this.gain = solution.gain.clone();
+        this.uniqueCoverage = solution.uniqueCoverage.clone();
+        this.weakCoverage = solution.weakCoverage.clone();
+        this.version = solution.version;
+        this.levelReports = solution.levelReports;
     }
 
     /**
      * Returns the number of sets chosen in this solution. We must minimize the number of sets chosen.
+     * Sets fixed by the instance reduction are included.
      * @return number of sets chosen
      */
     public int getScore() {
-        return chosenSets.size();
+        return chosenSets.size() + getInstance().getFixedSets().length;
     }
 
     /**
@@ -54,60 +169,300 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
      * @return true if the minimum coverage is reached
      */
     public boolean isCovered() {
-        return coveredPoints().size() >= minCoveredRequired;
+        return getCoveredCount() >= minCoveredRequired;
+    }
+
+    /**
+     * Total weight of the covered points. Equals the number of covered points unless the instance has been reduced.
+     * @return covered weight
+     */
+    public int getCoveredCount() {
+        return nCovered;
+    }
+
+    /**
+     * For each set, weight of the uncovered points it would cover if added. Always 0 for chosen sets.
+     * Updated by {@link #addSet(int)} and {@link #removeSet(int)}, the returned array must not be modified.
+     * @return gain of each set
+     */
+    public int[] getGain() {
+        return gain;
+    }
+
+    /**
+     * For each chosen set, weight of the points no other chosen set covers, which would be uncovered if the set is removed.
+     * Always 0 for sets not in the solution.
+     * Updated by {@link #addSet(int)} and {@link #removeSet(int)}, the returned array must not be modified.
+     * @return unique coverage of each set
+     */
+    public int[] getUniqueCoverage() {
+        return uniqueCoverage;
+    }
+
+    /**
+     * For each set, weight of its points covered by zero or one chosen sets: the points it would help
+     * to cover or to make redundant if added.
+     * Updated by {@link #addSet(int)} and {@link #removeSet(int)}, the returned array must not be modified.
+     * @return weak coverage of each set
+     */
+    public int[] getWeakCoverage() {
+        return weakCoverage;
+    }
+
+    /**
+     * Counter incremented every time a set is added or removed, including rollbacks.
+     * Cached data computed from this solution is valid while the version does not change.
+     * @return current version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the candidate list of this solution, shared by every neighborhood exploring it
+     * @return candidate list, refreshed on demand when the solution changes
+     */
+    public CandidateList getCandidateList() {
+        if (candidateList == null) {
+            candidateList = new CandidateList(this);
+        }
+        return candidateList;
     }
 
     /**
-     * Compute all covered and uncovered points
+     * Number of points not covered by any chosen set
+     * @return number of uncovered points
+     */
+    public int getnUncoveredPoints() {
+        return nUncovered;
+    }
+
+    /**
+     * Returns the i-th uncovered point. Positions change when points are covered or uncovered,
+     * use together with {@link #getnUncoveredPoints()} to iterate all uncovered points.
+     * @param i position, between 0 (inclusive) and the number of uncovered points (exclusive)
+     * @return uncovered point id
+     */
+    public int getUncoveredPoint(int i) {
+        return uncovered[i];
+    }
+
+    /**
+     * Returns all covered points. The BitSet is built from the cover counts the first time it is requested
+     * after a change, and reused until the solution changes again. It must not be modified.
      * @return set that contains all points covered by the chosen sets
      */
     public BitSet coveredPoints() {
-        var instance = getInstance();
-        BitSet coveredPoints = new BitSet(instance.getnPoints());
-        for (int set : this.chosenSets) {
-            coveredPoints.or(instance.getCoveredPoints(set));
+        if (!coveredPointsValid) {
+            if (coveredPoints == null) {
+                coveredPoints = new BitSet(coverCount.length);
+            } else {
+                coveredPoints.clear();
+            }
+            for (int p = 0; p < coverCount.length; p++) {
+                if (coverCount[p] > 0) {
+                    coveredPoints.add(p);
+                }
+            }
+            coveredPointsValid = true;
         }
         return coveredPoints;
     }
 
     public double coverage() {
-        return coveredPoints().size() / (double) minCoveredRequired;
+        return getCoveredCount() / (double) minCoveredRequired;
     }
 
     /**
      * Picks a set, all its points will now be covered.
      * @param set set to add to the solution
-     * @return number of new points covered by this set
+     * @return weight of the new points covered by this set
      */
     public int addSet(int set) {
+        record(set + 1);
+        return doAddSet(set);
+    }
+
+    private int doAddSet(int set) {
         chosenSets.add(set);
+        var instance = getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] weights = instance.getPointWeights();
         int newCovered = 0;
-        for(var point : getInstance().getCoveredPoints(set)){
+        for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+            int point = setPoints[i];
+            int weight = weights[point];
             if(coverCount[point] == 0){
-                newCovered++;
+                newCovered += weight;
+                removeUncovered(point);
+                // Point is now covered, no set gains it anymore, and only this set covers it
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    gain[pointSets[j]] -= weight;
+                }
+                uniqueCoverage[set] += weight;
+            } else if (coverCount[point] == 1) {
+                // The set that covered the point alone now shares it, and the point is no longer weak
+                uniqueCoverage[soleCover(point, set)] -= weight;
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    weakCoverage[pointSets[j]] -= weight;
+                }
             }
             coverCount[point]++;
         }
+        nCovered += newCovered;
+        version++;
+        coveredPointsValid = false;
         return newCovered;
     }
 
     /**
      * Removes a set, its points may or may not be covered by other sets.
      * @param set set to remove from the solution
-     * @return number of points that are no longer covered after removing this set
+     * @return weight of the points that are no longer covered after removing this set
      */
     public int removeSet(int set) {
+        record(-(set + 1));
+        return doRemoveSet(set);
+    }
+
+    private int doRemoveSet(int set) {
         chosenSets.remove(set);
+        var instance = getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] weights = instance.getPointWeights();
         int newUncovered = 0;
-        for(var point : getInstance().getCoveredPoints(set)){
-            if(coverCount[point] == 1){
-                newUncovered++;
-            }
+        for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+            int point = setPoints[i];
+            int weight = weights[point];
             coverCount[point]--;
+            if(coverCount[point] == 0){
+                newUncovered += weight;
+                addUncovered(point);
+                // Point is uncovered again, every set covering it gains it
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    gain[pointSets[j]] += weight;
+                }
+                uniqueCoverage[set] -= weight;
+            } else if (coverCount[point] == 1) {
+                // The remaining set now covers the point alone, so the point is weak again
+                uniqueCoverage[soleCover(point, set)] += weight;
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    weakCoverage[pointSets[j]] += weight;
+                }
+            }
         }
+        nCovered -= newUncovered;
+        version++;
+        coveredPointsValid = false;
         return newUncovered;
     }
 
+    /**
+     * Start recording changes, so they can be undone with {@link #rollback(int)}.
+     * Checkpoints can be nested, and each one must be closed by either {@link #rollback(int)} or {@link #commit(int)},
+     * innermost first. Undoing changes costs O(changed points) instead of cloning the whole solution.
+     * @return checkpoint identifier
+     */
+    public int checkpoint() {
+        if (openCheckpoints == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, openCheckpoints * 2);
+        }
+        checkpoints[openCheckpoints++] = trailSize;
+        return trailSize;
+    }
+
+    /**
+     * Undo every addSet and removeSet done since the given checkpoint, and close it.
+     * Points may be listed in a different order by {@link #getUncoveredPoint(int)}, all other state is restored.
+     * @param checkpoint value returned by {@link #checkpoint()} for the innermost open checkpoint
+     * @throws IllegalArgumentException if the checkpoint is not the innermost open one
+     */
+    public void rollback(int checkpoint) {
+        checkInnermost(checkpoint);
+        while (trailSize > checkpoint) {
+            int op = trail[--trailSize];
+            if (op > 0) {
+                doRemoveSet(op - 1);
+            } else {
+                doAddSet(-op - 1);
+            }
+        }
+        close();
+    }
+
+    /**
+     * Keep every change done since the given checkpoint, and close it.
+     * The changes stay recorded while an outer checkpoint is open, so rolling it back still undoes them.
+     * @param checkpoint value returned by {@link #checkpoint()} for the innermost open checkpoint
+     * @throws IllegalArgumentException if the checkpoint is not the innermost open one
+     */
+    public void commit(int checkpoint) {
+        checkInnermost(checkpoint);
+        close();
+    }
+
+    private void checkInnermost(int checkpoint) {
+        if (openCheckpoints == 0) {
+            throw new IllegalStateException("No open checkpoint");
+        }
+        if (checkpoint != checkpoints[openCheckpoints - 1]) {
+            throw new IllegalArgumentException("Checkpoint " + checkpoint + " is not the innermost open one, " + checkpoints[openCheckpoints - 1]);
+        }
+    }
+
+    private void close() {
+        openCheckpoints--;
+        if (openCheckpoints == 0) {
+            trailSize = 0;
+        }
+    }
+
+    private void record(int op) {
+        if (openCheckpoints == 0) {
+            return;
+        }
+        if (trailSize == trail.length) {
+            trail = Arrays.copyOf(trail, trailSize * 2);
+        }
+        trail[trailSize++] = op;
+    }
+
+    /**
+     * Find the only chosen set covering a point, other than the given one
+     */
+    private int soleCover(int point, int except) {
+        var instance = getInstance();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+            int other = pointSets[j];
+            if (other != except && chosenSets.contains(other)) {
+                return other;
+            }
+        }
+        throw new IllegalStateException("Point " + point + " is not covered by any other chosen set");
+    }
+
+    private void addUncovered(int point) {
+        uncoveredIndex[point] = nUncovered;
+        uncovered[nUncovered++] = point;
+    }
+
+    private void removeUncovered(int point) {
+        // Move the last uncovered point to the position of the removed one
+        int position = uncoveredIndex[point];
+        int last = uncovered[--nUncovered];
+        uncovered[position] = last;
+        uncoveredIndex[last] = position;
+        uncoveredIndex[point] = -1;
+    }
+
     /**
      * Returns all currently chosen sets
      * @return set of sets chosen in this solution.
@@ -115,6 +470,22 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
     public BitSet getChosenSets() {
         return chosenSets;
     }
+
+    /**
+     * Returns the chosen sets translated to the original instance, including the sets fixed by the instance reduction
+     * @return original set ids, sorted in ascending order
+     */
+    public int[] getOriginalSets() {
+        var instance = getInstance();
+        int[] fixed = instance.getFixedSets();
+        int[] sets = Arrays.copyOf(fixed, fixed.length + chosenSets.size());
+        int i = fixed.length;
+        for (int set : chosenSets) {
+            sets[i++] = instance.getOriginalSetId(set);
+        }
+        Arrays.sort(sets);
+        return sets;
+    }
     // Add this method to PSSCSolution.java
 
     /**---------------------------------------------------- EDIT
@@ -126,12 +497,28 @@ public class PSSCSolution extends Solution<PSSCSolution, PSSCInstance> {
         return this.coverCount;
     }
     /**
-     * Minimum points that must be covered for the solution to be feasible
+     * Minimum weight of points that must be covered for the solution to be feasible
      */
     public int minCoveredRequired(){
         return minCoveredRequired;
     }
 
+    /**
+     * Time accounting of the k levels searched by the run that returned this solution
+     * @return one CSV row for each level, empty if the algorithm did not record them
+     */
+    public List<String> getLevelReports() {
+        return levelReports;
+    }
+
+    /**
+     * Attach the time accounting of the run to the solution it returns, so that it is exported with it
+     * @param levelReports one CSV row for each level, in the order they finished
+     */
+    public void setLevelReports(List<String> levelReports) {
+        this.levelReports = List.copyOf(levelReports);
+    }
+
     @Override
     public PSSCSolution cloneSolution() {
         return new PSSCSolution(this);
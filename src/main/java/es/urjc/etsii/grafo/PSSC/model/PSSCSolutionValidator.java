@@ -18,6 +18,18 @@ public class PSSCSolutionValidator extends SolutionValidator<PSSCSolution, PSSCI
             validationResult = ValidationResult.fail("Current coverage (%s) < required coverage (%s)".formatted(solution.coverage(), PSSCSolution.MIN_COVERAGE));
         }
 
+        var reduction = solution.getInstance().getReduction();
+        if(validationResult.isValid() && reduction != null){
+            // Check the solution translated back to the original instance
+            var original = new PSSCSolution(reduction.original());
+            for(int set: solution.getOriginalSets()){
+                original.addSet(set);
+            }
+            if(!original.isCovered()){
+                validationResult = ValidationResult.fail("Coverage in the original instance (%s) < required coverage (%s)".formatted(original.coverage(), PSSCSolution.MIN_COVERAGE));
+            }
+        }
+
         return validationResult;
     }
 }
@@ -0,0 +1,133 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Detects sets that should never be chosen: empty sets, duplicated sets (only the lowest id is kept),
+ * and sets strictly contained in another set.
+ * <p>
+ * Instead of testing every pair of sets, a set j is only compared against the sets that
+ * cover its least covered point, as any superset of j must cover it. Candidates are then filtered by cardinality,
+ * as a strict superset is strictly larger, and by a 64 bit signature of the covered points,
+ * before doing the exact containment check. Sets are processed in parallel using the common fork-join pool.
+ */
+final class SetDominance {
+
+    private SetDominance() {}
+
+    /**
+     * Compute useless sets
+     * @param nSets number of sets
+     * @param coverage for each set, which points does it cover
+     * @param setOffsets offsets of the set -> points CSR
+     * @param setPoints point ids grouped by set
+     * @param pointOffsets offsets of the point -> sets index
+     * @param pointSets set ids grouped by point
+     * @return useless sets
+     */
+    static BitSet findUselessSets(int nSets, BitSet[] coverage, int[] setOffsets, int[] setPoints, int[] pointOffsets, int[] pointSets) {
+        boolean[] useless = new boolean[nSets];
+
+        // 1. Empty sets and duplicates, grouped by content hash. Keep the first set of each group.
+        var representatives = new HashMap<Integer, int[]>();
+        for (int s = 0; s < nSets; s++) {
+            int from = setOffsets[s], to = setOffsets[s + 1];
+            if (from == to) {
+                useless[s] = true;
+                continue;
+            }
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + setPoints[i];
+            }
+            int[] group = representatives.get(hash);
+            boolean duplicate = false;
+            if (group != null) {
+                for (int other : group) {
+                    if (Arrays.equals(setPoints, setOffsets[other], setOffsets[other + 1], setPoints, from, to)) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+            }
+            if (duplicate) {
+                useless[s] = true;
+            } else {
+                representatives.put(hash, group == null ? new int[]{s} : append(group, s));
+            }
+        }
+
+        // 2. Bloom style signatures, one bit per point
+        long[] signatures = new long[nSets];
+        for (int s = 0; s < nSets; s++) {
+            long signature = 0;
+            for (int i = setOffsets[s]; i < setOffsets[s + 1]; i++) {
+                signature |= 1L << mix(setPoints[i]);
+            }
+            signatures[s] = signature;
+        }
+
+        // 3. Strict containment, only against sets that share the least covered point
+        IntStream.range(0, nSets).parallel().forEach(j -> {
+            if (useless[j]) {
+                return;
+            }
+            int from = setOffsets[j], to = setOffsets[j + 1];
+            int size = to - from;
+            int rarest = setPoints[from];
+            for (int i = from + 1; i < to; i++) {
+                int point = setPoints[i];
+                if (pointOffsets[point + 1] - pointOffsets[point] < pointOffsets[rarest + 1] - pointOffsets[rarest]) {
+                    rarest = point;
+                }
+            }
+            long signature = signatures[j];
+            for (int c = pointOffsets[rarest]; c < pointOffsets[rarest + 1]; c++) {
+                int candidate = pointSets[c];
+                if (setOffsets[candidate + 1] - setOffsets[candidate] <= size
+                        || (signature & ~signatures[candidate]) != 0) {
+                    continue;
+                }
+                if (containsAll(coverage[candidate], setPoints, from, to)) {
+                    // Writes to different positions, no synchronization needed
+                    useless[j] = true;
+                    return;
+                }
+            }
+        });
+
+        var uselessSets = new BitSet(nSets);
+        for (int s = 0; s < nSets; s++) {
+            if (useless[s]) {
+                uselessSets.add(s);
+            }
+        }
+        return uselessSets;
+    }
+
+    private static boolean containsAll(BitSet superset, int[] points, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!superset.contains(points[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spread consecutive point ids among the 64 signature bits
+     */
+    private static int mix(int point) {
+        return (point * 0x9E3779B9) >>> 26;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+}
@@ -5,9 +5,8 @@ import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Neighborhood that explores removing a single set from the solution.
@@ -21,42 +20,26 @@ public class DropNeighborhood extends Neighborhood<DropNeighborhood.DropMove, PS
      * Explores all valid 'drop' moves from the current solution.
      * <p>
      * A move is considered valid if, after removing the set, the total number of
-     * covered points still meets the minimum requirement. This is checked efficiently
-     * using the solution's coverCount array.
+     * covered points still meets the minimum requirement. This is checked in O(1)
+     * using the unique coverage maintained by the solution.
+     * Moves are generated lazily while the returned stream is consumed, which must happen before the solution changes.
      *
      * @param sol The current solution.
-     * @return An ExploreResult containing a list of all possible improving DropMoves.
+     * @return An ExploreResult containing all possible improving DropMoves.
      */
     @Override
     public ExploreResult<DropMove, PSSCSolution, PSSCInstance> explore(PSSCSolution sol) {
-        var instance = sol.getInstance();
-        List<DropMove> moves = new ArrayList<>();
-
-        // Pre-calculate coverage counts for efficiency.
-        // This is the most expensive part, but we only do it once per exploration.
-        int currentCoveredPoints = sol.coveredPoints().size();
+        int currentCoveredPoints = sol.getCoveredCount();
         int minRequired = sol.minCoveredRequired();
-        int[] coverCount = sol.getCoverCount();
-
-        // Iterate only through the sets currently in the solution
-        for (int set : sol.getChosenSets()) {
-            // Calculate how many points would become uncovered if we drop this set.
-            // A point becomes uncovered only if its cover count is exactly 1.
-            int newlyUncoveredCount = 0;
-            for (int point : instance.getCoveredPoints(set)) {
-                if (coverCount[point] == 1) {
-                    newlyUncoveredCount++;
-                }
-            }
-
-            // Check if the solution remains feasible after the drop
-            if (currentCoveredPoints - newlyUncoveredCount >= minRequired) {
-                // If so, this is a valid, improving move
-                moves.add(new DropMove(sol, set));
-            }
-        }
-
-        return ExploreResult.fromList(moves);
+        int[] uniqueCoverage = sol.getUniqueCoverage();
+
+        // Iterate only through the sets currently in the solution.
+        // Points that would become uncovered if we drop a set are maintained by the solution,
+        // check if the solution remains feasible after the drop.
+        Stream<DropMove> moves = sol.getChosenSets().stream()
+                .filter(set -> currentCoveredPoints - uniqueCoverage[set] >= minRequired)
+                .map(set -> new DropMove(sol, set));
+        return ExploreResult.fromStream(moves);
     }
 
 
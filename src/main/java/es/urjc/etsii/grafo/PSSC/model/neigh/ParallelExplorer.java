@@ -0,0 +1,192 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.util.TimeControl;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Parallel first-improvement search for neighborhoods whose moves are indexed by an outer loop,
+ * such as the first set to remove in Swap22 and Swap21opt.
+ * <p>
+ * Indexes are split in ranges and explored by a ForkJoinPool. Each range creates its own worker,
+ * so workers may keep mutable scratch state, while the solution being explored must not change.
+ * When a worker finds an improving move the other ones are cancelled through a shared flag:
+ * <ul>
+ *     <li>{@link Policy#ANY}: every worker stops, the first move found wins.</li>
+ *     <li>{@link Policy#LOWEST_INDEX}: only the indexes after the improving one stop, so the result
+ *     is the same move as a sequential search, whatever the number of threads.</li>
+ * </ul>
+ * The calling thread waits for the search, checking a stop condition, by default the time limit,
+ * and cancelling every worker when it holds. The pool threads live until the explorer is closed.
+ */
+public final class ParallelExplorer implements AutoCloseable {
+
+    /**
+     * Which improving move is returned when several workers find one
+     */
+    public enum Policy {
+        /**
+         * The first move found by any worker, stopping all of them. Fastest, but not reproducible.
+         */
+        ANY,
+        /**
+         * The move at the lowest outer index, as found by a sequential search. Reproducible.
+         */
+        LOWEST_INDEX
+    }
+
+    /**
+     * Explores the moves of one outer index
+     * @param <M> move type
+     */
+    @FunctionalInterface
+    public interface IndexSearch<M> {
+        /**
+         * @param index outer index
+         * @return the first improving move of this index in sequential order, if any
+         */
+        Optional<M> explore(int index);
+    }
+
+    private static final long POLL_MILLIS = 20;
+
+    private final ForkJoinPool pool;
+    private final Policy policy;
+
+    /**
+     * @param parallelism number of threads, at least 2
+     * @param policy which move to return when several are found
+     */
+    public ParallelExplorer(int parallelism, Policy policy) {
+        if (parallelism < 2) {
+            throw new IllegalArgumentException("Parallel exploration needs at least 2 threads, got " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.policy = policy;
+    }
+
+    /**
+     * Search indexes 0 (inclusive) to n (exclusive) for an improving move
+     * @param n number of outer indexes
+     * @param workers creates a worker for each range of indexes, called from the pool threads
+     * @param <M> move type
+     * @return improving move chosen according to the policy, or empty if there is none or time is up
+     */
+    public <M> Optional<M> findFirst(int n, Supplier<IndexSearch<M>> workers) {
+        return findFirst(n, workers, TimeControl::isTimeUp);
+    }
+
+    /**
+     * Same as {@link #findFirst(int, Supplier)}, cancelling the search when the given condition holds
+     * @param stop checked by the calling thread while it waits, for example the deadline of the caller
+     * @return improving move chosen according to the policy, or empty if there is none or the search was stopped first
+     */
+    public <M> Optional<M> findFirst(int n, Supplier<IndexSearch<M>> workers, BooleanSupplier stop) {
+        if (n <= 0) {
+            return Optional.empty();
+        }
+        var search = new Search<>(workers);
+        int grain = Math.max(1, n / (4 * pool.getParallelism()));
+        ForkJoinTask<Void> task = pool.submit(search.new Range(0, n, grain));
+        while (true) {
+            try {
+                task.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                if (stop.getAsBoolean()) {
+                    search.cancelled.set(true);
+                }
+            } catch (InterruptedException e) {
+                search.cancelled.set(true);
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Parallel exploration failed", e.getCause());
+            }
+        }
+        var found = search.found.get();
+        return found == null ? Optional.empty() : Optional.of(found.move());
+    }
+
+    /**
+     * Shut down the pool threads, no search can be started afterwards
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private record Found<M>(int index, M move) {}
+
+    private final class Search<M> {
+        private final Supplier<IndexSearch<M>> workers;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicReference<Found<M>> found = new AtomicReference<>();
+
+        private Search(Supplier<IndexSearch<M>> workers) {
+            this.workers = workers;
+        }
+
+        private boolean skip(int index) {
+            if (cancelled.get()) {
+                return true;
+            }
+            var current = found.get();
+            return current != null && current.index() < index;
+        }
+
+        private void offer(int index, M move) {
+            if (policy == Policy.ANY) {
+                found.compareAndSet(null, new Found<>(index, move));
+                cancelled.set(true);
+                return;
+            }
+            // Keep the lowest index, later indexes will be skipped
+            var candidate = new Found<>(index, move);
+            var current = found.get();
+            while ((current == null || index < current.index()) && !found.compareAndSet(current, candidate)) {
+                current = found.get();
+            }
+        }
+
+        private final class Range extends RecursiveAction {
+            private final int from, to, grain;
+
+            private Range(int from, int to, int grain) {
+                this.from = from;
+                this.to = to;
+                this.grain = grain;
+            }
+
+            @Override
+            protected void compute() {
+                if (skip(from)) {
+                    return;
+                }
+                if (to - from > grain) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Range(from, middle, grain), new Range(middle, to, grain));
+                    return;
+                }
+                var worker = workers.get();
+                for (int i = from; i < to && !skip(i); i++) {
+                    var move = worker.explore(i);
+                    if (move.isPresent()) {
+                        offer(i, move.get());
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+
+import java.util.Arrays;
+
+/**
+ * Best-improvement (1,1)-swap neighborhood over every set, keeping the swap deltas up to date between moves.
+ * <p>
+ * Swapping out for in changes the covered weight by gain[in] + R[out][in] - uniqueCoverage[out], where R[out][in]
+ * is the weight of the points covered only by out that in also covers (see {@link SwapEvaluator}).
+ * R[out] is sparse, only the sets covering a point owned by out are non-zero, so the best set to swap in for out is
+ * either the best of them, kept for each chosen set, or the unchosen set with the largest gain, kept in a lazy max-heap.
+ * <p>
+ * After a swap executed through {@link #swap(int, int)}, only the chosen sets whose owned points changed,
+ * whose best set lost gain or was chosen, or that a set whose gain increased may now beat, are evaluated again. Any other change to the solution
+ * is detected through its version, and everything is rebuilt.
+ */
+public final class Swap11GainMatrix {
+
+    private static final int NONE = -1;
+
+    /**
+     * Rebuild everything instead of updating when more than 1 / REBUILD_FRACTION of the sets changed their gain
+     */
+    private static final int REBUILD_FRACTION = 4;
+
+    private final PSSCSolution solution;
+    private int version;
+
+    /**
+     * Only chosen set covering each point, NONE if the point is covered zero or several times
+     */
+    private final int[] owner;
+
+    /**
+     * For each chosen set, best set covering one of its owned points, and gain + R of that set
+     */
+    private final int[] bestSupportSet;
+    private final int[] bestSupportValue;
+
+    /**
+     * Unchosen sets, keyed by gain in the high bits and inverted id in the low ones. Entries are stale
+     * if the gain changed or the set was chosen, and are discarded when they reach the top.
+     */
+    private long[] heap;
+    private int heapSize;
+
+    // Scratch space
+    private final int[] recovered;
+    private int[] support;
+    private final int[] changedGain;
+    private final int[] setStamp;
+    private final int[] increasedStamp;
+    private final int[] dirtyStamp;
+    private final int[] pointStamp;
+    private int stamp;
+    private int[] dirty;
+    private int nDirty;
+
+    private int bestOut = NONE, bestIn = NONE, bestDelta;
+
+    /**
+     * @param solution solution to explore, may change between calls
+     */
+    public Swap11GainMatrix(PSSCSolution solution) {
+        this.solution = solution;
+        var instance = solution.getInstance();
+        int nSets = instance.getnSets();
+        this.owner = new int[instance.getnPoints()];
+        this.bestSupportSet = new int[nSets];
+        this.bestSupportValue = new int[nSets];
+        this.heap = new long[nSets];
+        this.recovered = new int[nSets];
+        this.support = new int[16];
+        this.changedGain = new int[nSets];
+        this.setStamp = new int[nSets];
+        this.increasedStamp = new int[nSets];
+        this.dirtyStamp = new int[nSets];
+        this.pointStamp = new int[instance.getnPoints()];
+        this.dirty = new int[16];
+        rebuild();
+    }
+
+    /**
+     * Find the swap with the largest positive coverage change, available through
+     * {@link #bestOut()}, {@link #bestIn()} and {@link #bestDelta()}. Ties are broken arbitrarily but deterministically.
+     * @return true if an improving swap exists
+     */
+    public boolean findBest() {
+        if (version != solution.getVersion()) {
+            rebuild();
+        }
+        int[] unique = solution.getUniqueCoverage();
+        int topSet = topGain();
+        int topGain = topSet == NONE ? Integer.MIN_VALUE : solution.getGain()[topSet];
+        bestOut = bestIn = NONE;
+        bestDelta = 0;
+        for (int out : solution.getChosenSets()) {
+            int in = bestSupportSet[out];
+            int value = bestSupportValue[out];
+            if (topSet != NONE && (in == NONE || topGain > value)) {
+                in = topSet;
+                value = topGain;
+            }
+            if (in != NONE && value - unique[out] > bestDelta) {
+                bestDelta = value - unique[out];
+                bestOut = out;
+                bestIn = in;
+            }
+        }
+        return bestOut != NONE;
+    }
+
+    /**
+     * Execute a swap and update the deltas affected by it
+     * @param setOut chosen set to remove
+     * @param setIn set to add
+     */
+    public void swap(int setOut, int setIn) {
+        if (version != solution.getVersion()) {
+            rebuild();
+        }
+        new Swap11Neighborhood.Swap11Move(solution, setOut, setIn).execute(solution);
+        version = solution.getVersion();
+
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] coverCount = solution.getCoverCount();
+        var chosenSets = solution.getChosenSets();
+        var pointsOut = instance.getCoveredPoints(setOut);
+        var pointsIn = instance.getCoveredPoints(setIn);
+
+        stamp++;
+        nDirty = 0;
+        markDirty(setIn);
+        // The removed set may now be swapped in for the sets owning its points
+        int nChangedGain = 0;
+        changedGain[nChangedGain++] = setOut;
+        setStamp[setOut] = stamp;
+        increasedStamp[setOut] = stamp;
+        for (int k = 0; k < 2; k++) {
+            int swapped = k == 0 ? setOut : setIn;
+            for (int i = setOffsets[swapped]; i < setOffsets[swapped + 1]; i++) {
+                int point = setPoints[i];
+                boolean inOut = pointsOut.contains(point);
+                if (pointStamp[point] == stamp) {
+                    continue;
+                }
+                pointStamp[point] = stamp;
+                if (inOut == pointsIn.contains(point)) {
+                    // Covered by both swapped sets, its cover count did not change but it may have passed to setIn
+                    if (owner[point] == setOut) {
+                        owner[point] = setIn;
+                    }
+                    continue;
+                }
+                int after = coverCount[point];
+                int before = inOut ? after + 1 : after - 1;
+                // Owners of points whose single cover changed
+                if (before == 1 && owner[point] != setOut) {
+                    markDirty(owner[point]);
+                }
+                owner[point] = after == 1 ? soleCover(point) : NONE;
+                if (after == 1) {
+                    markDirty(owner[point]);
+                }
+                // Sets covering points that became covered or uncovered changed their gain
+                if ((before == 0) != (after == 0)) {
+                    for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                        int set = pointSets[j];
+                        if (setStamp[set] != stamp) {
+                            setStamp[set] = stamp;
+                            changedGain[nChangedGain++] = set;
+                        }
+                        if (after == 0) {
+                            increasedStamp[set] = stamp;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (nChangedGain > instance.getnSets() / REBUILD_FRACTION) {
+            // Dense instance, nearly every row would be evaluated again anyway
+            rebuild();
+            return;
+        }
+        var uselessSets = instance.getUselessSets();
+        int[] gain = solution.getGain();
+        int[] unique = solution.getUniqueCoverage();
+        int maxIncreased = Integer.MIN_VALUE;
+        for (int c = 0; c < nChangedGain; c++) {
+            int set = changedGain[c];
+            if (!chosenSets.contains(set) && !uselessSets.contains(set)) {
+                push(set, gain[set]);
+                if (increasedStamp[set] == stamp) {
+                    maxIncreased = Math.max(maxIncreased, gain[set]);
+                }
+            }
+        }
+        for (int set : chosenSets) {
+            int best = bestSupportSet[set];
+            // The best set has just been chosen or lost gain
+            if (best == setIn || best != NONE && setStamp[best] == stamp) {
+                markDirty(set);
+            }
+            // A set that gained may now beat the best one, recovering at most the unique coverage
+            if (maxIncreased != Integer.MIN_VALUE && (best == NONE || maxIncreased + unique[set] > bestSupportValue[set])) {
+                markDirty(set);
+            }
+        }
+        for (int d = 0; d < nDirty; d++) {
+            if (chosenSets.contains(dirty[d])) {
+                evaluate(dirty[d]);
+            }
+        }
+    }
+
+    public int bestOut() {
+        return bestOut;
+    }
+
+    public int bestIn() {
+        return bestIn;
+    }
+
+    public int bestDelta() {
+        return bestDelta;
+    }
+
+    private void rebuild() {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] coverCount = solution.getCoverCount();
+        var chosenSets = solution.getChosenSets();
+
+        Arrays.fill(owner, NONE);
+        for (int set : chosenSets) {
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                if (coverCount[setPoints[i]] == 1) {
+                    owner[setPoints[i]] = set;
+                }
+            }
+        }
+        rebuildHeap();
+        for (int set : chosenSets) {
+            evaluate(set);
+        }
+        version = solution.getVersion();
+    }
+
+    private void rebuildHeap() {
+        var instance = solution.getInstance();
+        int[] gain = solution.getGain();
+        var chosenSets = solution.getChosenSets();
+        var uselessSets = instance.getUselessSets();
+        heapSize = 0;
+        for (int s = 0; s < instance.getnSets(); s++) {
+            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
+                heap[heapSize++] = key(gain[s], s);
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Recompute the best set covering a point owned by the given chosen set
+     */
+    private void evaluate(int out) {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] weights = instance.getPointWeights();
+        int[] gain = solution.getGain();
+        var chosenSets = solution.getChosenSets();
+        var uselessSets = instance.getUselessSets();
+
+        int n = 0;
+        for (int i = setOffsets[out]; i < setOffsets[out + 1]; i++) {
+            int point = setPoints[i];
+            if (owner[point] != out) {
+                continue;
+            }
+            for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                int set = pointSets[j];
+                if (recovered[set] == 0) {
+                    addSupport(n++, set);
+                }
+                recovered[set] += weights[point];
+            }
+        }
+        int best = NONE;
+        int bestValue = Integer.MIN_VALUE;
+        for (int t = 0; t < n; t++) {
+            int set = support[t];
+            int value = gain[set] + recovered[set];
+            recovered[set] = 0;
+            if ((value > bestValue || value == bestValue && set < best)
+                    && !chosenSets.contains(set) && !uselessSets.contains(set)) {
+                best = set;
+                bestValue = value;
+            }
+        }
+        bestSupportSet[out] = best;
+        bestSupportValue[out] = bestValue;
+    }
+
+    private void addSupport(int i, int set) {
+        if (i == support.length) {
+            support = Arrays.copyOf(support, i * 2);
+        }
+        support[i] = set;
+    }
+
+    private void markDirty(int set) {
+        if (dirtyStamp[set] == stamp) {
+            return;
+        }
+        dirtyStamp[set] = stamp;
+        if (nDirty == dirty.length) {
+            dirty = Arrays.copyOf(dirty, nDirty * 2);
+        }
+        dirty[nDirty++] = set;
+    }
+
+    private int soleCover(int point) {
+        var instance = solution.getInstance();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        var chosenSets = solution.getChosenSets();
+        for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+            if (chosenSets.contains(pointSets[j])) {
+                return pointSets[j];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Unchosen set with the largest gain, lowest id on ties, discarding stale entries
+     */
+    private int topGain() {
+        int[] gain = solution.getGain();
+        var chosenSets = solution.getChosenSets();
+        while (heapSize > 0) {
+            int set = Integer.MAX_VALUE - (int) heap[0];
+            int keyGain = (int) (heap[0] >>> 32);
+            if (!chosenSets.contains(set) && keyGain == gain[set]) {
+                return set;
+            }
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+        }
+        return NONE;
+    }
+
+    private void push(int set, int gain) {
+        if (heapSize == heap.length) {
+            if (heap.length >= 4 * solution.getInstance().getnSets()) {
+                // Mostly stale entries, start again from the current gains, which already include this one
+                rebuildHeap();
+                return;
+            }
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        long value = key(gain, set);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent] >= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private static long key(int gain, int set) {
+        return ((long) gain << 32) | (Integer.MAX_VALUE - set);
+    }
+
+    private void siftDown(int i) {
+        long value = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+}
@@ -6,11 +6,10 @@ import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
 import es.urjc.etsii.grafo.util.collections.BitSet;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Implements a (1,1)-Swap neighborhood for the Maximum Set k-Covering Problem (MSKCP).
@@ -40,23 +39,20 @@ public class Swap11Neighborhood extends Neighborhood<Swap11Neighborhood.Swap11Mo
 
     /**
      * Standard explore method that generates all possible valid moves.
-     * Used for a "Best Improvement" strategy.
+     * Used for a "Best Improvement" strategy, see {@link #findBestImprovingMove(PSSCSolution)} to avoid creating every move.
+     * Moves are generated lazily while the returned stream is consumed, which must happen before the solution changes.
      */
     @Override
     public ExploreResult<Swap11Move, PSSCSolution, PSSCInstance> explore(PSSCSolution solution) {
-        List<Swap11Move> moves = new ArrayList<>();
         var chosenSets = solution.getChosenSets();
-        List<Integer> candidateSetsIn = buildCandidateList(solution);
-
-        for (int setOut : chosenSets) {
-            for (int setIn : candidateSetsIn) {
-                if (setOut == setIn || chosenSets.contains(setIn)) {
-                    continue;
-                }
-                moves.add(new Swap11Move(solution, setOut, setIn));
-            }
-        }
-        return ExploreResult.fromList(moves);
+        var candidateList = solution.getCandidateList();
+        int nCandidates = candidateList.top(candidateListSize);
+        int[] candidateSetsIn = candidateList.view();
+
+        Stream<Swap11Move> moves = chosenSets.stream().flatMap(setOut -> IntStream.of(candidateSetsIn).limit(nCandidates)
+                .filter(setIn -> setOut != setIn && !chosenSets.contains(setIn))
+                .mapToObj(setIn -> new Swap11Move(solution, setOut, setIn)));
+        return ExploreResult.fromStream(moves);
     }
 
     /**
@@ -66,70 +62,32 @@ public class Swap11Neighborhood extends Neighborhood<Swap11Neighborhood.Swap11Mo
      * @return An Optional containing the first improving move found, or an empty Optional if none exists.
      */
     public Optional<Swap11Move> findFirstImprovingMove(PSSCSolution solution) {
-        var chosenSets = solution.getChosenSets();
-        List<Integer> candidateSetsIn = buildCandidateList(solution);
-
-        // For each set in the current solution...
-        for (int setOut : chosenSets) {
-            // ...try swapping it with each of the best candidates.
-            for (int setIn : candidateSetsIn) {
-                if (setOut == setIn || chosenSets.contains(setIn)) {
-                    continue;
-                }
-
-                // Create a move object to evaluate its score change
-                var move = new Swap11Move(solution, setOut, setIn);
-
-                // Check if it's an improving move
-                if (move.getScoreChange() > 0) {
-                    return Optional.of(move); // Success! An improving move was found, return immediately.
-                }
-            }
-        }
-        
-        return Optional.empty(); // No improving move was found after checking all combinations.
+        return findImprovingMove(solution, true);
     }
 
     /**
-     * Builds a list of the most promising candidate sets to be swapped into the solution.
-     * A "promising" candidate is one that covers points that are either uncovered or critically covered.
-     * @param solution The current solution.
-     * @return A list of candidate set IDs.
+     * "Best Improvement" exploration that scores every swap without creating move objects,
+     * see {@link SwapEvaluator}. Returns the same move as taking the maximum of {@link #explore(PSSCSolution)}.
+     * @param solution The solution to explore.
+     * @return An Optional containing the move with the largest positive score change, or an empty Optional if none exists.
      */
-    private List<Integer> buildCandidateList(PSSCSolution solution) {
-        PSSCInstance instance = solution.getInstance();
-        var uselessSets = instance.getUselessSets();
-        var chosenSets = solution.getChosenSets();
-        int[] coverCount = solution.getCoverCount();
-
-        BitSet weakPoints = new BitSet(instance.getnPoints());
-        for (int i = 0; i < coverCount.length; i++) {
-            if (coverCount[i] <= 1) {
-                weakPoints.add(i);
-            }
-        }
+    public Optional<Swap11Move> findBestImprovingMove(PSSCSolution solution) {
+        return findImprovingMove(solution, false);
+    }
 
-        List<Candidate> candidates = new ArrayList<>();
-        for (int s = 0; s < instance.getnSets(); s++) {
-            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
-                BitSet contribution = instance.getCoveredPoints(s).clone();
-                contribution.and(weakPoints);
-                if (!contribution.isEmpty()) {
-                    candidates.add(new Candidate(s, contribution.size()));
-                }
-            }
-        }
-        candidates.sort(Comparator.comparingInt(Candidate::score).reversed());
+    private Optional<Swap11Move> findImprovingMove(PSSCSolution solution, boolean firstImprovement) {
+        var candidateList = solution.getCandidateList();
+        int nCandidates = candidateList.top(candidateListSize);
 
-        List<Integer> topCandidates = new ArrayList<>();
-        for (int i = 0; i < Math.min(candidateListSize, candidates.size()); i++) {
-            topCandidates.add(candidates.get(i).id());
+        // For each set in the current solution, try swapping it with each of the best candidates.
+        var evaluator = new SwapEvaluator(solution);
+        if (!evaluator.findBest(candidateList.view(), nCandidates, firstImprovement)) {
+            return Optional.empty(); // No improving move was found after checking all combinations.
         }
-        return topCandidates;
+        // Only the winner is materialized as a move object
+        return Optional.of(new Swap11Move(solution, evaluator.bestOut(), evaluator.bestIn()));
     }
 
-    private record Candidate(int id, int score) {}
-
     /**
      * Represents a move that swaps one set in the solution for another.
      * Calculates the change in total coverage.
@@ -153,25 +111,23 @@ public class Swap11Neighborhood extends Neighborhood<Swap11Neighborhood.Swap11Mo
 
         @Override
         public double getScoreChange() {
-            int[] coverCount = this.getSolution().getCoverCount();
-            PSSCInstance instance = this.getSolution().getInstance();
+            var solution = this.getSolution();
+            int[] coverCount = solution.getCoverCount();
+            PSSCInstance instance = solution.getInstance();
+            int[] setOffsets = instance.getSetOffsets();
+            int[] setPoints = instance.getSetPoints();
+            int[] weights = instance.getPointWeights();
             BitSet pointsIn = instance.getCoveredPoints(setIn);
-            BitSet pointsOut = instance.getCoveredPoints(setOut);
-
-            int coverageGain = 0;
-            for (int point : pointsIn) {
-                if (coverCount[point] == 0) {
-                    coverageGain++;
-                }
-            }
 
-            int coverageLoss = 0;
-            for (int point : pointsOut) {
-                if (coverCount[point] == 1 && !pointsIn.contains(point)) {
-                    coverageLoss++;
+            // Points only setOut covers are lost, unless setIn covers them too
+            int kept = 0;
+            for (int i = setOffsets[setOut]; i < setOffsets[setOut + 1]; i++) {
+                int point = setPoints[i];
+                if (coverCount[point] == 1 && pointsIn.contains(point)) {
+                    kept += weights[point];
                 }
             }
-            return coverageGain - coverageLoss;
+            return solution.getGain()[setIn] - (solution.getUniqueCoverage()[setOut] - kept);
         }
 
         @Override
@@ -5,11 +5,8 @@ import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
 import es.urjc.etsii.grafo.util.TimeControl;
-import es.urjc.etsii.grafo.util.collections.BitSet;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -25,13 +22,25 @@ import java.util.Optional;
 public class Swap21optNeighborhood extends Neighborhood<Swap21optNeighborhood.Swap21optMove, PSSCSolution, PSSCInstance> {
 
     private final int candidateListSize;
+    private final ParallelExplorer parallel;
 
     public Swap21optNeighborhood() {
         this(50); // A default candidate list size of 50 is a good starting point
     }
 
     public Swap21optNeighborhood(int candidateListSize) {
+        this(candidateListSize, null);
+    }
+
+    /**
+     * Constructor enabling parallel exploration, splitting the first set to remove between threads.
+     * Each thread hypothesizes moves on its own copy of the solution.
+     * @param candidateListSize number of promising sets to add
+     * @param parallel explorer to use, or null to explore sequentially
+     */
+    public Swap21optNeighborhood(int candidateListSize, ParallelExplorer parallel) {
         this.candidateListSize = candidateListSize;
+        this.parallel = parallel;
     }
 
     /**
@@ -52,135 +61,205 @@ public class Swap21optNeighborhood extends Neighborhood<Swap21optNeighborhood.Sw
      * @return An Optional containing the first improving move found, or an empty Optional if none exists.
      */
     public Optional<Swap21optMove> findFirstImprovingMove(PSSCSolution solution) {
-        List<Integer> chosenSetsList = new ArrayList<>();
-        for (int set : solution.getChosenSets()) {
-            chosenSetsList.add(set);
+        var chosenSets = solution.getChosenSets();
+        if (chosenSets.size() < 2) return Optional.empty();
+        int[] chosen = new int[chosenSets.size()];
+        int nChosen = 0;
+        for (int set : chosenSets) {
+            chosen[nChosen++] = set;
         }
-        if (chosenSetsList.size() < 2) return Optional.empty();
 
-        List<Integer> candidateSetsIn = buildCandidateList(solution, this.candidateListSize);
-        if (candidateSetsIn.isEmpty()) return Optional.empty();
+        // Copied, as the shared candidate list is selected again for the repair of every hypothesized move
+        var candidateList = solution.getCandidateList();
+        int nCandidates = candidateList.top(this.candidateListSize);
+        int[] candidateSetsIn = Arrays.copyOf(candidateList.view(), nCandidates);
+        if (candidateSetsIn.length == 0) return Optional.empty();
 
+        if (parallel != null) {
+            // Moves are hypothesized on a private copy of the solution for each worker
+            return parallel.findFirst(nChosen, () -> {
+                var repair = new RepairSearch(solution.cloneSolution());
+                return i -> findFirstImprovingMove(solution, repair, chosen, i, candidateSetsIn);
+            });
+        }
         // Loop through all unique pairs of sets to remove
-        for (int i = 0; i < chosenSetsList.size(); i++) {
-            int setOut1 = chosenSetsList.get(i);
-            for (int j = i + 1; j < chosenSetsList.size(); j++) {
-
-                // Add a time check to ensure the neighborhood is responsive
-                if (TimeControl.isTimeUp()) {
-                    return Optional.empty();
-                }
-
-                int setOut2 = chosenSetsList.get(j);
-
-                // For each pair, loop through promising candidates to add
-                for (int setIn1 : candidateSetsIn) {
-                    
-                    // Hypothesize the move and its repair
-                    PSSCSolution tempSolution = solution.cloneSolution();
-                    tempSolution.removeSet(setOut1);
-                    tempSolution.removeSet(setOut2);
-                    tempSolution.addSet(setIn1);
-
-                    // OPTIMIZATION: Use a candidate list to find the best repair set,
-                    // instead of searching all N sets.
-                    int bestRepairSet = findBestRepairSet(tempSolution);
-
-                    if (bestRepairSet != -1) {
-                        tempSolution.addSet(bestRepairSet);
-                    } else {
-                        // Cannot repair, this path is invalid, so skip it
-                        continue;
-                    }
-                    
-                    // Now, check if this complex move was actually an improvement
-                    if (tempSolution.coveredPoints().size() > solution.coveredPoints().size()) {
-                        // Found an improving move! Return it immediately.
-                        return Optional.of(new Swap21optMove(solution, setOut1, setOut2, setIn1));
-                    }
-                }
+        var repair = new RepairSearch(solution);
+        for (int i = 0; i < nChosen; i++) {
+            var move = findFirstImprovingMove(solution, repair, chosen, i, candidateSetsIn);
+            if (move.isPresent()) {
+                return move;
             }
         }
-        
         return Optional.empty(); // No improving move was found
     }
 
     /**
-     * Finds the single best set to add to a given solution to maximize new coverage.
-     * Uses a candidate list for efficiency.
+     * Search the improving moves that remove chosen[i] and a later chosen set
+     * @param solution solution the move will be applied to
+     * @param repair repair search over a solution with the same sets, where moves are hypothesized and undone
      */
-    private int findBestRepairSet(PSSCSolution solution) {
-        // We use a smaller candidate list for the repair step as it's called more frequently
-        List<Integer> repairCandidates = buildCandidateList(solution, 25); 
-
-        int bestSet = -1;
-        int maxNewCovered = -1;
-        var currentlyCovered = solution.coveredPoints();
-
-        for (int s : repairCandidates) {
-            // The candidate list already filters for sets not in the solution, but this is a safe check.
-            if (!solution.getChosenSets().contains(s)) {
-                var contribution = solution.getInstance().getCoveredPoints(s).clone();
-                contribution.andNot(currentlyCovered);
-                int newCovered = contribution.size();
-                if (newCovered > maxNewCovered) {
-                    maxNewCovered = newCovered;
-                    bestSet = s;
+    private Optional<Swap21optMove> findFirstImprovingMove(PSSCSolution solution, RepairSearch repair, int[] chosen, int i, int[] candidateSetsIn) {
+        PSSCSolution work = repair.work;
+        int currentCovered = work.getCoveredCount();
+        int setOut1 = chosen[i];
+        for (int j = i + 1; j < chosen.length; j++) {
+            // Add a time check to ensure the neighborhood is responsive
+            if (TimeControl.isTimeUp()) {
+                return Optional.empty();
+            }
+            int setOut2 = chosen[j];
+
+            // For each pair, loop through promising candidates to add
+            for (int setIn1 : candidateSetsIn) {
+
+                // Hypothesize the move in place, the repair set is chosen from the updated gains without adding it
+                int checkpoint = work.checkpoint();
+                work.removeSet(setOut1);
+                work.removeSet(setOut2);
+                work.addSet(setIn1);
+                int bestRepairSet = repair.best(setOut1, setOut2, setIn1);
+                int repairedCovered = bestRepairSet == -1 ? -1 : work.getCoveredCount() + work.getGain()[bestRepairSet];
+                work.rollback(checkpoint);
+
+                // Cannot repair, this path is invalid, so skip it
+                if (bestRepairSet == -1) {
+                    continue;
+                }
+
+                // Now, check if this complex move was actually an improvement
+                if (repairedCovered > currentCovered) {
+                    // Found an improving move! Return it immediately.
+                    return Optional.of(new Swap21optMove(solution, setOut1, setOut2, setIn1, bestRepairSet, repairedCovered - currentCovered));
                 }
             }
         }
-        return bestSet;
+        return Optional.empty();
     }
 
     /**
-     * Builds a list of promising candidate sets to add to a solution.
+     * Finds the set with the largest gain to repair a hypothesized move, in time proportional to the points of the moved sets.
+     * <p>
+     * The gain of a set only changes if it covers a point that became covered or uncovered by the move,
+     * and those points belong to the moved sets. Sets covering none of them keep their initial gain, so the best
+     * of them is the first one still available in the order by initial gain. The rest are checked one by one.
      */
-    private List<Integer> buildCandidateList(PSSCSolution solution, int size) {
-        PSSCInstance instance = solution.getInstance();
-        var uselessSets = instance.getUselessSets();
-        var chosenSets = solution.getChosenSets();
-        int[] coverCount = solution.getCoverCount();
+    private static final class RepairSearch {
+        private final PSSCSolution work;
+        /**
+         * Sets not in the solution, by decreasing initial gain and increasing id
+         */
+        private final int[] order;
+        private final int[] setStamp;
+        private final int[] pointStamp;
+        private int currentStamp;
 
-        BitSet weakPoints = new BitSet(instance.getnPoints());
-        for (int i = 0; i < coverCount.length; i++) {
-            if (coverCount[i] <= 1) {
-                weakPoints.add(i);
+        private RepairSearch(PSSCSolution work) {
+            this.work = work;
+            var instance = work.getInstance();
+            var chosenSets = work.getChosenSets();
+            var uselessSets = instance.getUselessSets();
+            int[] gain = work.getGain();
+            long[] keys = new long[instance.getnSets()];
+            int n = 0;
+            for (int s = 0; s < instance.getnSets(); s++) {
+                if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
+                    keys[n++] = ((long) gain[s] << 32) | (Integer.MAX_VALUE - s);
+                }
+            }
+            Arrays.sort(keys, 0, n);
+            this.order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = Integer.MAX_VALUE - (int) keys[n - 1 - i];
+            }
+            this.setStamp = new int[instance.getnSets()];
+            this.pointStamp = new int[instance.getnPoints()];
+        }
+
+        /**
+         * Best set to add after removing out1 and out2 and adding in1 to the work solution
+         * @return set with the largest gain, lowest id on ties, or -1 if there is none
+         */
+        private int best(int out1, int out2, int in1) {
+            currentStamp++;
+            // The removed sets were not in the initial order, check them directly
+            setStamp[out1] = currentStamp;
+            setStamp[out2] = currentStamp;
+            int best = better(out1, out2);
+            best = bestChanged(out1, out1, out2, in1, best);
+            best = bestChanged(out2, out1, out2, in1, best);
+            best = bestChanged(in1, out1, out2, in1, best);
+            var chosenSets = work.getChosenSets();
+            for (int s : order) {
+                if (setStamp[s] != currentStamp && !chosenSets.contains(s)) {
+                    return better(best, s);
+                }
             }
+            return best;
         }
 
-        List<Candidate> candidates = new ArrayList<>();
-        for (int s = 0; s < instance.getnSets(); s++) {
-            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
-                BitSet contribution = instance.getCoveredPoints(s).clone();
-                contribution.and(weakPoints);
-                if (!contribution.isEmpty()) {
-                    candidates.add(new Candidate(s, contribution.size()));
+        /**
+         * Check every set covering a point of the given moved set that changed between covered and uncovered
+         * @return best available set among them and best
+         */
+        private int bestChanged(int moved, int out1, int out2, int in1, int best) {
+            var instance = work.getInstance();
+            int[] setOffsets = instance.getSetOffsets();
+            int[] setPoints = instance.getSetPoints();
+            int[] pointOffsets = instance.getPointOffsets();
+            int[] pointSets = instance.getPointSets();
+            int[] coverCount = work.getCoverCount();
+            var pointsOut1 = instance.getCoveredPoints(out1);
+            var pointsOut2 = instance.getCoveredPoints(out2);
+            var pointsIn1 = instance.getCoveredPoints(in1);
+            var chosenSets = work.getChosenSets();
+            var uselessSets = instance.getUselessSets();
+            for (int i = setOffsets[moved]; i < setOffsets[moved + 1]; i++) {
+                int point = setPoints[i];
+                if (pointStamp[point] == currentStamp) {
+                    continue;
+                }
+                pointStamp[point] = currentStamp;
+                int before = coverCount[point] - (pointsIn1.contains(point) ? 1 : 0)
+                        + (pointsOut1.contains(point) ? 1 : 0) + (pointsOut2.contains(point) ? 1 : 0);
+                if ((before == 0) == (coverCount[point] == 0)) {
+                    continue;
+                }
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    int s = pointSets[j];
+                    if (setStamp[s] != currentStamp) {
+                        setStamp[s] = currentStamp;
+                        if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
+                            best = better(best, s);
+                        }
+                    }
                 }
             }
+            return best;
         }
-        candidates.sort(Comparator.comparingInt(Candidate::score).reversed());
 
-        List<Integer> topCandidates = new ArrayList<>();
-        for (int i = 0; i < Math.min(size, candidates.size()); i++) {
-            topCandidates.add(candidates.get(i).id());
+        private int better(int a, int b) {
+            if (a == -1) return b;
+            if (b == -1) return a;
+            int[] gain = work.getGain();
+            return gain[b] > gain[a] || gain[b] == gain[a] && b < a ? b : a;
         }
-        return topCandidates;
     }
 
-    private record Candidate(int id, int score) {}
-
     /**
-     * Represents a (2,1)-opt move, which removes two sets and adds one.
-     * The solution must be repaired to its original size 'k' after this move is executed.
+     * Represents a (2,1)-opt move, which removes two sets and adds one, followed by the set that repairs
+     * the solution back to its original size 'k'.
      */
     public static class Swap21optMove extends PSSCBaseMove {
-        private final int setOut1, setOut2, setIn1;
+        private final int setOut1, setOut2, setIn1, setRepair;
+        private final int scoreChange;
 
-        public Swap21optMove(PSSCSolution solution, int setOut1, int setOut2, int setIn1) {
+        public Swap21optMove(PSSCSolution solution, int setOut1, int setOut2, int setIn1, int setRepair, int scoreChange) {
             super(solution);
             this.setOut1 = setOut1;
             this.setOut2 = setOut2;
             this.setIn1 = setIn1;
+            this.setRepair = setRepair;
+            this.scoreChange = scoreChange;
         }
 
         @Override
@@ -188,22 +267,21 @@ public class Swap21optNeighborhood extends Neighborhood<Swap21optNeighborhood.Sw
             solution.removeSet(setOut1);
             solution.removeSet(setOut2);
             solution.addSet(setIn1);
+            solution.addSet(setRepair);
             return solution;
         }
-        
+
         /**
-         * The score change for this move itself is not meaningful, as the final score
-         * depends on the repair step. We return 1.0 as a placeholder to signify it's
-         * an improving move, but the real check is done in the neighborhood exploration.
+         * Change in covered weight after the move and its repair, computed during the exploration
          */
         @Override
         public double getScoreChange() {
-            return 1.0;
+            return scoreChange;
         }
 
         @Override
         public String toString() {
-            return "Swap21opt{out=[" + setOut1 + "," + setOut2 + "], in=" + setIn1 + "}";
+            return "Swap21opt{out=[" + setOut1 + "," + setOut2 + "], in=" + setIn1 + ", repair=" + setRepair + "}";
         }
 
         @Override
@@ -212,14 +290,15 @@ public class Swap21optNeighborhood extends Neighborhood<Swap21optNeighborhood.Sw
             if (o == null || getClass() != o.getClass()) return false;
             Swap21optMove that = (Swap21optMove) o;
             // Order of setOut doesn't matter
-            return (setOut1 == that.setOut1 && setOut2 == that.setOut2 || setOut1 == that.setOut2 && setOut2 == that.setOut1) && setIn1 == that.setIn1;
+            return (setOut1 == that.setOut1 && setOut2 == that.setOut2 || setOut1 == that.setOut2 && setOut2 == that.setOut1)
+                    && setIn1 == that.setIn1 && setRepair == that.setRepair;
         }
 
         @Override
         public int hashCode() {
             // Order-independent hash for setOut
             int outHash = Integer.hashCode(setOut1) + Integer.hashCode(setOut2);
-            return Objects.hash(outHash, setIn1);
+            return Objects.hash(outHash, setIn1, setRepair);
         }
     }
-}
\ No newline at end of file
+}
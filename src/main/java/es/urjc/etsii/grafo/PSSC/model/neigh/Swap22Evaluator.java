@@ -0,0 +1,267 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Scores (2,2)-swaps between the chosen sets and a fixed list of candidates without allocating.
+ * <p>
+ * Removing the pair (out1, out2) loses L, the points covered only by out1, only by out2, or only by both.
+ * Adding (in1, in2) then changes the covered weight by
+ * <pre>
+ *     gain[in1] + gain[in2] + recovered[in1] + recovered[in2] - w(L) - overlap(in1, in2)
+ * </pre>
+ * where recovered[s] = w(L &cap; s), and overlap(in1, in2) = w((uncovered &cup; L) &cap; in1 &cap; in2)
+ * corrects the points both incoming sets would count twice. The part of the overlap on uncovered points
+ * does not depend on the outgoing pair and is computed once, the rest only walks the points of L.
+ * <p>
+ * Two bounds skip work: recovered[s] is at most the weight of the points of s covered once or twice,
+ * so an outgoing pair whose unique coverage exceeds the best two candidates is discarded without
+ * visiting any point, and a candidate that cannot improve even with the best partner is skipped.
+ */
+final class Swap22Evaluator {
+
+    private final PSSCSolution solution;
+    private final int[] candidates;
+    private final int nCandidates;
+    /**
+     * Position of each set in candidates, -1 if not a candidate
+     */
+    private final int[] candidateIndex;
+    private final int[] recovered;
+    /**
+     * Weight of the uncovered points covered by each pair of candidates, nCandidates x nCandidates
+     */
+    private final int[] overlapUncovered;
+    /**
+     * Weight of the points of L covered by each pair of candidates, nCandidates x nCandidates
+     */
+    private final int[] overlapLost;
+    private final int bestPairBound;
+
+    // Points of the loaded pair that would be lost, and candidates covering the current point
+    private int[] lost;
+    private int nLost;
+    private int lostWeight;
+    private final int[] covering;
+
+    private int bestOut1 = -1, bestOut2 = -1, bestIn1 = -1, bestIn2 = -1, bestDelta;
+
+    /**
+     * @param solution solution to evaluate swaps on, must not change while the evaluator is used
+     * @param candidates sets not in the solution that may be swapped in
+     * @param nCandidates number of valid positions in candidates
+     */
+    Swap22Evaluator(PSSCSolution solution, int[] candidates, int nCandidates) {
+        this.solution = solution;
+        this.candidates = candidates;
+        this.nCandidates = nCandidates;
+        var instance = solution.getInstance();
+        int nSets = instance.getnSets();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] weights = instance.getPointWeights();
+        int[] coverCount = solution.getCoverCount();
+        int[] gain = solution.getGain();
+
+        this.candidateIndex = new int[nSets];
+        Arrays.fill(candidateIndex, -1);
+        for (int c = 0; c < nCandidates; c++) {
+            candidateIndex[candidates[c]] = c;
+        }
+        this.recovered = new int[nSets];
+        this.overlapUncovered = new int[nCandidates * nCandidates];
+        this.overlapLost = new int[nCandidates * nCandidates];
+        this.covering = new int[nCandidates];
+        this.lost = new int[16];
+
+        // Upper bound of gain + recovered of each candidate for any outgoing pair, and of the best two together
+        int first = 0, second = 0;
+        for (int c = 0; c < nCandidates; c++) {
+            int set = candidates[c];
+            int fragile = 0;
+            for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+                int point = setPoints[i];
+                int cc = coverCount[point];
+                if (cc == 1 || cc == 2) {
+                    fragile += weights[point];
+                } else if (cc == 0) {
+                    // Each uncovered point shared with a later candidate is counted once per pair
+                    for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                        int other = candidateIndex[pointSets[j]];
+                        if (other > c) {
+                            overlapUncovered[c * nCandidates + other] += weights[point];
+                        }
+                    }
+                }
+            }
+            int bound = gain[set] + fragile;
+            if (bound > first) {
+                second = first;
+                first = bound;
+            } else if (bound > second) {
+                second = bound;
+            }
+        }
+        this.bestPairBound = first + second;
+    }
+
+    /**
+     * Find an improving (2,2)-swap. Outgoing pairs are tried in the given order (i, j) with i &lt; j,
+     * and incoming pairs in candidate order, keeping the first strictly best one.
+     * @param chosen chosen sets to remove pairs from
+     * @param nChosen number of valid positions in chosen
+     * @param firstImprovement stop at the first improving swap instead of searching the best one
+     * @param stop checked before each set to remove, ends the search with the best swap found so far
+     * @return true if an improving swap was found
+     */
+    boolean findBest(int[] chosen, int nChosen, boolean firstImprovement, BooleanSupplier stop) {
+        bestOut1 = bestOut2 = bestIn1 = bestIn2 = -1;
+        bestDelta = 0;
+        for (int i = 0; i < nChosen; i++) {
+            // Stop if the caller says so, returning the best swap found so far
+            if (stop.getAsBoolean()) {
+                break;
+            }
+            if (explore(chosen, nChosen, i, firstImprovement) && firstImprovement) {
+                return true;
+            }
+        }
+        return bestOut1 != -1;
+    }
+
+    /**
+     * Evaluate every swap removing chosen[i] and a later chosen set
+     * @return true if the best swap improved
+     */
+    boolean explore(int[] chosen, int nChosen, int i, boolean firstImprovement) {
+        int[] unique = solution.getUniqueCoverage();
+        int[] gain = solution.getGain();
+        int out1 = chosen[i];
+        boolean improved = false;
+        for (int j = i + 1; j < nChosen; j++) {
+            int out2 = chosen[j];
+            // Loses at least the unique coverage of both sets, recovers at most bestPairBound
+            if (bestPairBound - unique[out1] - unique[out2] <= bestDelta) {
+                continue;
+            }
+            load(out1, out2);
+            int bestSingle = 0;
+            for (int c = 0; c < nCandidates; c++) {
+                int set = candidates[c];
+                bestSingle = Math.max(bestSingle, gain[set] + recovered[set]);
+            }
+            for (int k = 0; k < nCandidates; k++) {
+                int in1 = candidates[k];
+                int single1 = gain[in1] + recovered[in1] - lostWeight;
+                if (single1 + bestSingle <= bestDelta) {
+                    continue;
+                }
+                for (int l = k + 1; l < nCandidates; l++) {
+                    int in2 = candidates[l];
+                    int pair = k * nCandidates + l;
+                    int delta = single1 + gain[in2] + recovered[in2] - overlapUncovered[pair] - overlapLost[pair];
+                    if (delta > bestDelta) {
+                        bestDelta = delta;
+                        bestOut1 = out1;
+                        bestOut2 = out2;
+                        bestIn1 = in1;
+                        bestIn2 = in2;
+                        improved = true;
+                        if (firstImprovement) {
+                            unload();
+                            return true;
+                        }
+                    }
+                }
+            }
+            unload();
+        }
+        return improved;
+    }
+
+    int bestOut1() {
+        return bestOut1;
+    }
+
+    int bestOut2() {
+        return bestOut2;
+    }
+
+    int bestIn1() {
+        return bestIn1;
+    }
+
+    int bestIn2() {
+        return bestIn2;
+    }
+
+    int bestDelta() {
+        return bestDelta;
+    }
+
+    private void load(int out1, int out2) {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] coverCount = solution.getCoverCount();
+        var pointsOut2 = instance.getCoveredPoints(out2);
+        nLost = 0;
+        lostWeight = 0;
+        for (int i = setOffsets[out1]; i < setOffsets[out1 + 1]; i++) {
+            int point = setPoints[i];
+            if (coverCount[point] == 1 || coverCount[point] == 2 && pointsOut2.contains(point)) {
+                addLost(point);
+            }
+        }
+        for (int i = setOffsets[out2]; i < setOffsets[out2 + 1]; i++) {
+            int point = setPoints[i];
+            if (coverCount[point] == 1) {
+                addLost(point);
+            }
+        }
+    }
+
+    private void addLost(int point) {
+        if (nLost == lost.length) {
+            lost = Arrays.copyOf(lost, nLost * 2);
+        }
+        lost[nLost++] = point;
+        int weight = solution.getInstance().getPointWeights()[point];
+        lostWeight += weight;
+        update(point, weight);
+    }
+
+    private void unload() {
+        int[] weights = solution.getInstance().getPointWeights();
+        for (int i = 0; i < nLost; i++) {
+            update(lost[i], -weights[lost[i]]);
+        }
+        nLost = 0;
+        lostWeight = 0;
+    }
+
+    private void update(int point, int weight) {
+        var instance = solution.getInstance();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int n = 0;
+        for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+            int set = pointSets[j];
+            recovered[set] += weight;
+            if (candidateIndex[set] != -1) {
+                covering[n++] = candidateIndex[set];
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (covering[a] < covering[b]) {
+                    overlapLost[covering[a] * nCandidates + covering[b]] += weight;
+                }
+            }
+        }
+    }
+}
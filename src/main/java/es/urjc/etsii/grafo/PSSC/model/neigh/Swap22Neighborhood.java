@@ -7,11 +7,9 @@ import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
 import es.urjc.etsii.grafo.util.TimeControl;
 import es.urjc.etsii.grafo.util.collections.BitSet;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 /**
  * Implements a (2,2)-Swap neighborhood for the Maximum Set k-Covering Problem (MSKCP).
@@ -25,6 +23,7 @@ import java.util.Optional;
 public class Swap22Neighborhood extends Neighborhood<Swap22Neighborhood.Swap22Move, PSSCSolution, PSSCInstance> {
 
     private final int candidateListSize;
+    private final ParallelExplorer parallel;
 
     /**
      * Default constructor. Uses a candidate list of size 75.
@@ -40,7 +39,17 @@ public class Swap22Neighborhood extends Neighborhood<Swap22Neighborhood.Swap22Mo
      * @param candidateListSize The number of promising 'in' sets to consider.
      */
     public Swap22Neighborhood(int candidateListSize) {
+        this(candidateListSize, null);
+    }
+
+    /**
+     * Constructor enabling parallel first-improvement exploration, splitting the first set to remove between threads.
+     * @param candidateListSize The number of promising 'in' sets to consider.
+     * @param parallel explorer to use in {@link #findFirstImprovingMove(PSSCSolution)}, or null to explore sequentially
+     */
+    public Swap22Neighborhood(int candidateListSize, ParallelExplorer parallel) {
         this.candidateListSize = candidateListSize;
+        this.parallel = parallel;
     }
 
     /**
@@ -64,99 +73,69 @@ public class Swap22Neighborhood extends Neighborhood<Swap22Neighborhood.Swap22Mo
      * @return An Optional containing the first improving move found, or an empty Optional if none exists or time runs out.
      */
     public Optional<Swap22Move> findFirstImprovingMove(PSSCSolution solution) {
-        List<Integer> chosenSetsList = new ArrayList<>();
-        for (int set : solution.getChosenSets()) {
-            chosenSetsList.add(set);
-        }
-        // This neighborhood requires at least 2 sets in the solution.
-        if (chosenSetsList.size() < 2) {
-            return Optional.empty();
-        }
-
-        // Build a list of promising candidates to swap in.
-        List<Integer> candidateSetsIn = buildCandidateList(solution);
-        // We also need at least 2 candidates to form a pair.
-        if (candidateSetsIn.size() < 2) {
-            return Optional.empty();
-        }
-
-        // Efficiently generate unique pairs of sets to remove
-        for (int i = 0; i < chosenSetsList.size(); i++) {
-            int setOut1 = chosenSetsList.get(i);
-            for (int j = i + 1; j < chosenSetsList.size(); j++) {
-                // =========================================================================
-                // CRITICAL TIME CHECK: Ensures the algorithm stops if the time limit is up.
-                // This prevents the algorithm from running past its allocated time, which is
-                // essential for fair experiments.
-                if (TimeControl.isTimeUp()) {
-                    return Optional.empty();
-                }
-                // =========================================================================
-                
-                int setOut2 = chosenSetsList.get(j);
-
-                // Efficiently generate unique pairs of sets to add from the candidate list
-                for (int k = 0; k < candidateSetsIn.size(); k++) {
-                    int setIn1 = candidateSetsIn.get(k);
-                    for (int l = k + 1; l < candidateSetsIn.size(); l++) {
-                        int setIn2 = candidateSetsIn.get(l);
-
-                        // Create a single move object to evaluate it
-                        var move = new Swap22Move(solution, setOut1, setOut2, setIn1, setIn2);
-
-                        // Check if it's an improving move
-                        if (move.getScoreChange() > 0) {
-                            return Optional.of(move); // Success! Found an improving move, return immediately.
-                        }
-                    }
-                }
-            }
-        }
-
-        return Optional.empty(); // No improving move found after checking all possibilities.
+        return findFirstImprovingMove(solution, TimeControl::isTimeUp);
     }
 
+    /**
+     * Same as {@link #findFirstImprovingMove(PSSCSolution)}, checking the given condition instead of the time limit.
+     * @param solution The solution to explore.
+     * @param stop Checked before each set to remove, for example the deadline of the caller. Ends the search without a move.
+     * @return An Optional containing the first improving move found, or an empty Optional if none exists or the search was stopped.
+     */
+    public Optional<Swap22Move> findFirstImprovingMove(PSSCSolution solution, BooleanSupplier stop) {
+        return findImprovingMove(solution, true, stop);
+    }
 
     /**
-     * Builds a list of the most promising candidate sets to be swapped into the solution.
-     * A "promising" candidate is one that covers points that are either uncovered or critically covered (by only one set).
-     * @param solution The current solution.
-     * @return A list of candidate set IDs, sorted by promise.
+     * "Best Improvement" exploration, returning the (2,2)-swap with the largest positive score change.
+     * Stops with the best move found so far if the time limit is exceeded.
+     * @param solution The solution to explore.
+     * @return An Optional containing the best improving move found, or an empty Optional if none exists.
      */
-    private List<Integer> buildCandidateList(PSSCSolution solution) {
-        PSSCInstance instance = solution.getInstance();
-        var uselessSets = instance.getUselessSets();
-        var chosenSets = solution.getChosenSets();
-        int[] coverCount = solution.getCoverCount();
+    public Optional<Swap22Move> findBestImprovingMove(PSSCSolution solution) {
+        return findImprovingMove(solution, false, TimeControl::isTimeUp);
+    }
 
-        BitSet weakPoints = new BitSet(instance.getnPoints());
-        for (int i = 0; i < coverCount.length; i++) {
-            if (coverCount[i] <= 1) {
-                weakPoints.add(i);
-            }
+    private Optional<Swap22Move> findImprovingMove(PSSCSolution solution, boolean firstImprovement, BooleanSupplier stop) {
+        var chosenSets = solution.getChosenSets();
+        // This neighborhood requires at least 2 sets in the solution.
+        if (chosenSets.size() < 2) {
+            return Optional.empty();
+        }
+        int[] chosen = new int[chosenSets.size()];
+        int nChosen = 0;
+        for (int set : chosenSets) {
+            chosen[nChosen++] = set;
         }
 
-        List<Candidate> candidates = new ArrayList<>();
-        for (int s = 0; s < instance.getnSets(); s++) {
-            if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
-                BitSet contribution = instance.getCoveredPoints(s).clone();
-                contribution.and(weakPoints);
-                if (!contribution.isEmpty()) {
-                    candidates.add(new Candidate(s, contribution.size()));
-                }
-            }
+        // Build a list of promising candidates to swap in.
+        var candidateList = solution.getCandidateList();
+        int nCandidates = candidateList.top(candidateListSize);
+        // We also need at least 2 candidates to form a pair.
+        if (nCandidates < 2) {
+            return Optional.empty();
         }
-        candidates.sort(Comparator.comparingInt(Candidate::score).reversed());
 
-        List<Integer> topCandidates = new ArrayList<>();
-        for (int i = 0; i < Math.min(candidateListSize, candidates.size()); i++) {
-            topCandidates.add(candidates.get(i).id());
+        // Moves are scored from the single swap deltas and pair corrections, see Swap22Evaluator,
+        // and only the chosen one is created. The stop condition is checked for each set to remove.
+        if (firstImprovement && parallel != null) {
+            // Each worker has its own evaluator, the solution is only read
+            int[] candidates = candidateList.view();
+            int n = nChosen;
+            return parallel.findFirst(nChosen, () -> {
+                var worker = new Swap22Evaluator(solution, candidates, nCandidates);
+                return i -> worker.explore(chosen, n, i, true) ?
+                        Optional.of(new Swap22Move(solution, worker.bestOut1(), worker.bestOut2(), worker.bestIn1(), worker.bestIn2())) :
+                        Optional.empty();
+            }, stop);
         }
-        return topCandidates;
+        var evaluator = new Swap22Evaluator(solution, candidateList.view(), nCandidates);
+        if (!evaluator.findBest(chosen, nChosen, firstImprovement, stop)) {
+            return Optional.empty(); // No improving move found after checking all possibilities.
+        }
+        return Optional.of(new Swap22Move(solution, evaluator.bestOut1(), evaluator.bestOut2(), evaluator.bestIn1(), evaluator.bestIn2()));
     }
 
-    private record Candidate(int id, int score) {}
-
     /**
      * Represents a move that swaps two sets in the solution for two others.
      */
@@ -184,47 +163,43 @@ public class Swap22Neighborhood extends Neighborhood<Swap22Neighborhood.Swap22Mo
         public double getScoreChange() {
             int[] coverCount = this.getSolution().getCoverCount();
             PSSCInstance instance = this.getSolution().getInstance();
+            int[] setOffsets = instance.getSetOffsets();
+            int[] setPoints = instance.getSetPoints();
+            int[] weights = instance.getPointWeights();
 
             BitSet pointsIn1 = instance.getCoveredPoints(setIn1);
             BitSet pointsIn2 = instance.getCoveredPoints(setIn2);
-            BitSet pointsOut1 = instance.getCoveredPoints(setOut1);
             BitSet pointsOut2 = instance.getCoveredPoints(setOut2);
 
-            BitSet allPointsIn = pointsIn1.clone();
-            allPointsIn.or(pointsIn2);
-
-            BitSet allPointsOut = pointsOut1.clone();
-            allPointsOut.or(pointsOut2);
-
             int coverageGain = 0;
-            // Gain is from points covered by incoming sets that were previously uncovered
-            for (int point : allPointsIn) {
+            // Gain is from points covered by incoming sets that were previously uncovered, counted once
+            for (int i = setOffsets[setIn1]; i < setOffsets[setIn1 + 1]; i++) {
+                int point = setPoints[i];
                 if (coverCount[point] == 0) {
-                    coverageGain++;
+                    coverageGain += weights[point];
+                }
+            }
+            for (int i = setOffsets[setIn2]; i < setOffsets[setIn2 + 1]; i++) {
+                int point = setPoints[i];
+                if (coverCount[point] == 0 && !pointsIn1.contains(point)) {
+                    coverageGain += weights[point];
                 }
             }
 
             int coverageLoss = 0;
-            // Loss is from points that become uncovered after this move.
-            // This only happens if a point is NOT covered by the incoming sets...
-            for (int point : allPointsOut) {
-                if (!allPointsIn.contains(point)) {
-                    // ...and if the outgoing sets were the ONLY ones covering it.
-                    boolean inOut1 = pointsOut1.contains(point);
-                    boolean inOut2 = pointsOut2.contains(point);
-
-                    // Case 1: Point covered only by setOut1
-                    if (inOut1 && !inOut2 && coverCount[point] == 1) {
-                        coverageLoss++;
-                    }
-                    // Case 2: Point covered only by setOut2
-                    else if (!inOut1 && inOut2 && coverCount[point] == 1) {
-                        coverageLoss++;
-                    }
-                    // Case 3: Point covered only by BOTH setOut1 and setOut2
-                    else if (inOut1 && inOut2 && coverCount[point] == 2) {
-                        coverageLoss++;
-                    }
+            // Loss is from points not covered by the incoming sets, whose only covering sets are the outgoing ones.
+            // Points covered by both outgoing sets are counted while walking setOut1.
+            for (int i = setOffsets[setOut1]; i < setOffsets[setOut1 + 1]; i++) {
+                int point = setPoints[i];
+                if ((coverCount[point] == 1 || coverCount[point] == 2 && pointsOut2.contains(point))
+                        && !pointsIn1.contains(point) && !pointsIn2.contains(point)) {
+                    coverageLoss += weights[point];
+                }
+            }
+            for (int i = setOffsets[setOut2]; i < setOffsets[setOut2 + 1]; i++) {
+                int point = setPoints[i];
+                if (coverCount[point] == 1 && !pointsIn1.contains(point) && !pointsIn2.contains(point)) {
+                    coverageLoss += weights[point];
                 }
             }
             return coverageGain - coverageLoss;
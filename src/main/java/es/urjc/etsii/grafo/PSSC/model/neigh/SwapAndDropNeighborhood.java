@@ -6,10 +6,11 @@ import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
 import es.urjc.etsii.grafo.util.collections.BitSet;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A powerful composite neighborhood that explores a (1,1)-Swap followed immediately by a Drop.
@@ -43,127 +44,188 @@ public class SwapAndDropNeighborhood extends Neighborhood<SwapAndDropNeighborhoo
         this(50);
     }
 
+    /**
+     * Explores every feasible SwapAndDrop move, see {@link #findFirstImprovingMove(PSSCSolution)} to stop at the first one.
+     * Moves are generated lazily for each swap while the returned stream is consumed, which must happen before the solution changes.
+     */
     @Override
     public ExploreResult<SwapAndDropMove, PSSCSolution, PSSCInstance> explore(PSSCSolution solution) {
-        PSSCInstance instance = solution.getInstance();
-        List<SwapAndDropMove> moves = new ArrayList<>();
-        var chosenSets = solution.getChosenSets();
-
-        if (chosenSets.size() < 2) {
+        if (solution.getChosenSets().size() < 2) {
             // Cannot perform a swap and drop if there are fewer than 2 sets.
-            return ExploreResult.fromList(moves);
+            return ExploreResult.empty();
         }
+        var search = new Search(solution);
+        Stream<SwapAndDropMove> moves = IntStream.of(search.byUnique).boxed().flatMap(setOut -> {
+            search.evaluator.load(setOut);
+            return IntStream.of(search.candidateSetsIn).boxed().flatMap(setIn -> {
+                int nDrops = search.drops(setOut, setIn, Integer.MAX_VALUE);
+                return IntStream.of(search.drops).limit(nDrops).mapToObj(setDrop -> new SwapAndDropMove(solution, setOut, setIn, setDrop));
+            });
+        });
+        return ExploreResult.fromStream(moves);
+    }
 
-        // OPTIMIZATION 1: Build a candidate list of promising sets to swap IN.
-        List<Integer> candidateSetsIn = buildCandidateList(solution);
-
-        // OPTIMIZATION 2: Pre-calculate coverage data for efficiency.
-        int[] coverCount = solution.getCoverCount();
-        int minRequired = solution.minCoveredRequired();
-        int currentCoveredPoints = 0;
-        for (int count : coverCount) {
-            if (count > 0) currentCoveredPoints++;
+    /**
+     * First-improvement exploration: stops at the first feasible drop found after a swap.
+     * Among the sets that can be dropped after that swap, one with the lowest unique coverage is returned.
+     * @param solution The solution to explore.
+     * @return An Optional containing the first feasible move found, or an empty Optional if none exists.
+     */
+    public Optional<SwapAndDropMove> findFirstImprovingMove(PSSCSolution solution) {
+        if (solution.getChosenSets().size() < 2) {
+            return Optional.empty();
         }
+        var search = new Search(solution);
+        for (int setOut : search.byUnique) {
+            search.evaluator.load(setOut);
+            for (int setIn : search.candidateSetsIn) {
+                if (search.drops(setOut, setIn, 1) > 0) {
+                    return Optional.of(new SwapAndDropMove(solution, setOut, setIn, search.drops[0]));
+                }
+            }
+        }
+        return Optional.empty();
+    }
 
-        for (int setOut : chosenSets) {
-            BitSet pointsInSetOut = instance.getCoveredPoints(setOut);
-
-            for (int setIn : candidateSetsIn) {
-                // A candidate should not already be in the chosen set.
-                if (chosenSets.contains(setIn)) continue;
+    /**
+     * Tries each swap in place, relying on the solution to update the unique coverage of every set.
+     * A set can be dropped after the swap if its unique coverage does not exceed the coverage slack. Only the chosen sets
+     * sharing a point with setOut or setIn whose cover count crosses 1 change their unique coverage, the rest are checked
+     * in increasing order of their unique coverage before the swap, stopping at the first one that cannot be dropped.
+     */
+    private final class Search {
+        private final PSSCSolution solution;
+        private final int minRequired;
+        private final int[] candidateSetsIn;
+        /**
+         * Chosen sets by unique coverage before any swap, lowest first, and their unique coverage
+         */
+        private final int[] byUnique;
+        private final int[] uniqueBefore;
+        private final SwapEvaluator evaluator;
+        private final int[] changed;
+        private final int[] drops;
+        private final int[] setStamp;
+        private final int[] pointStamp;
+        private int stamp;
+
+        private Search(PSSCSolution solution) {
+            this.solution = solution;
+            this.minRequired = solution.minCoveredRequired();
+            var instance = solution.getInstance();
+            var chosenSets = solution.getChosenSets();
+
+            // OPTIMIZATION 1: Use the candidate list of promising sets to swap IN.
+            // Copied, as the candidate list is selected again when the tentative swaps change the solution.
+            var candidateList = solution.getCandidateList();
+            int nCandidates = candidateList.top(candidateListSize);
+            this.candidateSetsIn = Arrays.copyOf(candidateList.view(), nCandidates);
+
+            // OPTIMIZATION 2: Chosen sets by unique coverage before any swap, lowest first.
+            this.uniqueBefore = solution.getUniqueCoverage().clone();
+            long[] keys = new long[chosenSets.size()];
+            int n = 0;
+            for (int set : chosenSets) {
+                keys[n++] = ((long) uniqueBefore[set] << 32) | set;
+            }
+            Arrays.sort(keys);
+            this.byUnique = new int[n];
+            for (int i = 0; i < n; i++) {
+                byUnique[i] = (int) keys[i];
+            }
 
-                // OPTIMIZATION 3: Efficiently predict coverage after the swap.
-                int netCoverageChangeFromSwap = 0;
-                BitSet pointsInSetIn = instance.getCoveredPoints(setIn);
+            this.evaluator = new SwapEvaluator(solution);
+            this.changed = new int[n];
+            this.drops = new int[n];
+            this.setStamp = new int[instance.getnSets()];
+            this.pointStamp = new int[instance.getnPoints()];
+        }
 
-                for (int point : pointsInSetIn) {
-                    if (coverCount[point] == 0) netCoverageChangeFromSwap++;
-                }
-                for (int point : pointsInSetOut) {
-                    if (coverCount[point] == 1 && !pointsInSetIn.contains(point)) {
-                        netCoverageChangeFromSwap--;
-                    }
-                }
+        /**
+         * Find the sets that can be dropped after swapping setOut for setIn, leaving the solution unchanged
+         * @param setOut set to remove, must be loaded in the evaluator
+         * @param setIn set to add
+         * @param limit maximum number of sets to find
+         * @return number of sets written to drops
+         */
+        private int drops(int setOut, int setIn, int limit) {
+            // OPTIMIZATION 3: Coverage after the swap in O(1). If the swap itself makes the solution infeasible,
+            // no drop can fix it. Skip.
+            if (solution.getChosenSets().contains(setIn) || evaluator.coveredAfter(setIn) < minRequired) {
+                return 0;
+            }
 
-                int coverageAfterSwap = currentCoveredPoints + netCoverageChangeFromSwap;
-                // If the swap itself makes the solution infeasible, no drop can fix it. Skip.
-                if (coverageAfterSwap < minRequired) {
-                    continue;
+            int checkpoint = solution.checkpoint();
+            solution.removeSet(setOut);
+            solution.addSet(setIn);
+            int slack = solution.getCoveredCount() - minRequired;
+            int[] unique = solution.getUniqueCoverage();
+
+            // Sets whose unique coverage changed are checked one by one
+            stamp++;
+            int nChanged = markChanged(solution, setOut, setIn, setStamp, pointStamp, stamp, changed);
+            int nDrops = 0;
+            for (int c = 0; c < nChanged && nDrops < limit; c++) {
+                if (unique[changed[c]] <= slack) {
+                    drops[nDrops++] = changed[c];
                 }
-
-                // Now, efficiently check for a possible drop.
-                for (int setDrop : chosenSets) {
-                    if (setDrop == setOut) continue; // Cannot drop the set we are swapping out in the same move.
-
-                    int newlyUncoveredByDrop = 0;
-                    for (int point : instance.getCoveredPoints(setDrop)) {
-                        // Simulate the cover count for this point after the swap.
-                        int countAfterSwap = coverCount[point];
-                        if (pointsInSetOut.contains(point)) countAfterSwap--;
-                        if (pointsInSetIn.contains(point)) countAfterSwap++;
-
-                        // If the point would be uniquely covered after the swap, then dropping setDrop would uncover it.
-                        if (countAfterSwap == 1) {
-                            newlyUncoveredByDrop++;
-                        }
-                    }
-
-                    if (coverageAfterSwap - newlyUncoveredByDrop >= minRequired) {
-                        moves.add(new SwapAndDropMove(solution, setOut, setIn, setDrop));
-                        // For a "first improvement" strategy, we could 'return ExploreResult.fromList(moves);' here.
-                        // For "best improvement", we continue building the full list.
-                    }
+            }
+            // The rest kept their unique coverage, stop at the first one that cannot be dropped
+            for (int i = 0; i < byUnique.length && nDrops < limit && uniqueBefore[byUnique[i]] <= slack; i++) {
+                int setDrop = byUnique[i];
+                if (setDrop != setOut && setStamp[setDrop] != stamp) {
+                    drops[nDrops++] = setDrop;
                 }
             }
+            solution.rollback(checkpoint);
+            return nDrops;
         }
-        return ExploreResult.fromList(moves);
     }
 
     /**
-     * Builds a list of promising candidate sets to consider for 'setIn'.
-     * A good candidate is one that covers points that are currently critically covered.
+     * Find the chosen sets, other than setIn, whose unique coverage changed after swapping setOut for setIn,
+     * which must already be applied to the solution. These cover a point of exactly one of the swapped sets
+     * that was or is now covered by a single set.
+     * @return number of sets written to changed, all marked with the given stamp in setStamp
      */
-    private List<Integer> buildCandidateList(PSSCSolution solution) {
-        PSSCInstance instance = solution.getInstance();
-        var uselessSets = instance.getUselessSets();
-        var chosenSets = solution.getChosenSets();
+    static int markChanged(PSSCSolution solution, int setOut, int setIn, int[] setStamp, int[] pointStamp, int stamp, int[] changed) {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
         int[] coverCount = solution.getCoverCount();
-
-        // Find all critically covered points (covered by only one set).
-        BitSet criticalPoints = new BitSet(instance.getnPoints());
-        for (int i = 0; i < coverCount.length; i++) {
-            if (coverCount[i] == 1) {
-                criticalPoints.add(i);
-            }
-        }
-
-        List<Candidate> candidates = new ArrayList<>();
-        if (!criticalPoints.isEmpty()) {
-            for (int s = 0; s < instance.getnSets(); s++) {
-                if (!chosenSets.contains(s) && !uselessSets.contains(s)) {
-                    BitSet contribution = instance.getCoveredPoints(s).clone();
-                    contribution.and(criticalPoints); // Intersect with critical points.
-                    if (!contribution.isEmpty()) {
-                        candidates.add(new Candidate(s, contribution.size()));
+        var chosenSets = solution.getChosenSets();
+        BitSet pointsOut = instance.getCoveredPoints(setOut);
+        BitSet pointsIn = instance.getCoveredPoints(setIn);
+        int nChanged = 0;
+        for (int k = 0; k < 2; k++) {
+            int swapped = k == 0 ? setOut : setIn;
+            for (int i = setOffsets[swapped]; i < setOffsets[swapped + 1]; i++) {
+                int point = setPoints[i];
+                boolean inOut = pointsOut.contains(point);
+                boolean inIn = pointsIn.contains(point);
+                if (pointStamp[point] == stamp || inOut == inIn) {
+                    continue; // Already checked, or covered by both swapped sets so its cover count did not change
+                }
+                pointStamp[point] = stamp;
+                int after = coverCount[point];
+                int before = inOut ? after + 1 : after - 1;
+                if (before != 1 && after != 1) {
+                    continue;
+                }
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    int set = pointSets[j];
+                    if (set != setIn && setStamp[set] != stamp && chosenSets.contains(set)) {
+                        setStamp[set] = stamp;
+                        changed[nChanged++] = set;
                     }
                 }
             }
         }
-
-        // Sort candidates by their score (how many critical points they cover), descending.
-        candidates.sort(Comparator.comparingInt(Candidate::score).reversed());
-
-        // Return the IDs of the top N candidates.
-        List<Integer> topCandidates = new ArrayList<>();
-        for (int i = 0; i < Math.min(this.candidateListSize, candidates.size()); i++) {
-            topCandidates.add(candidates.get(i).id());
-        }
-        return topCandidates;
+        return nChanged;
     }
 
-    // A private record for sorting candidates.
-    private record Candidate(int id, int score) {}
-
     /**
      * Represents a single composite move: Swap one set, then Drop another.
      */
@@ -0,0 +1,149 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+
+/**
+ * Scores every (setOut, setIn) swap of a given setOut without allocating.
+ * <p>
+ * Swapping changes the covered weight by gain[setIn] - uniqueCoverage[setOut] + recovered[setIn],
+ * where recovered[setIn] is the weight of the points only setOut covers that setIn also covers.
+ * Gains and unique coverage are maintained by the solution, and recovered is computed once per setOut
+ * by walking the sets that cover each point uniquely covered by setOut, through the inverted index.
+ * After {@link #load(int)}, each swap is scored in O(1).
+ */
+public final class SwapEvaluator {
+
+    private final PSSCSolution solution;
+    private final int[] recovered;
+    private int setOut = -1;
+
+    // Best swap found by findBest
+    private int bestOut;
+    private int bestIn;
+    private int bestDelta;
+
+    /**
+     * @param solution solution to evaluate swaps on, must not change while a setOut is loaded
+     */
+    public SwapEvaluator(PSSCSolution solution) {
+        this.solution = solution;
+        this.recovered = new int[solution.getInstance().getnSets()];
+    }
+
+    /**
+     * Prepare to score the swaps that remove the given set. Unloads the previous set if any.
+     * @param setOut chosen set to remove
+     */
+    public void load(int setOut) {
+        if (this.setOut != -1) {
+            update(this.setOut, -1);
+        }
+        this.setOut = setOut;
+        update(setOut, 1);
+    }
+
+    /**
+     * Change in covered weight of replacing the loaded setOut with setIn
+     * @param setIn set not in the solution
+     * @return covered weight after the swap minus covered weight before
+     */
+    public int delta(int setIn) {
+        return solution.getGain()[setIn] + recovered[setIn] - solution.getUniqueCoverage()[setOut];
+    }
+
+    /**
+     * Covered weight after replacing the loaded setOut with setIn
+     * @param setIn set not in the solution
+     * @return predicted covered weight
+     */
+    public int coveredAfter(int setIn) {
+        return solution.getCoveredCount() + delta(setIn);
+    }
+
+    /**
+     * Clear the loaded setOut, leaving the evaluator ready for another one
+     */
+    public void unload() {
+        if (setOut != -1) {
+            update(setOut, -1);
+            setOut = -1;
+        }
+    }
+
+    /**
+     * Find the swap with the largest positive coverage change between the chosen sets and the given candidates.
+     * Chosen sets are tried in ascending order and candidates in the given order, keeping the first best swap.
+     * The result is available through {@link #bestOut()}, {@link #bestIn()} and {@link #bestDelta()}.
+     * @param candidates sets that may be swapped in, chosen sets are skipped
+     * @param nCandidates number of valid positions in candidates
+     * @param firstImprovement stop at the first improving swap instead of searching the best one
+     * @return true if an improving swap was found
+     */
+    public boolean findBest(int[] candidates, int nCandidates, boolean firstImprovement) {
+        var chosenSets = solution.getChosenSets();
+        bestOut = -1;
+        bestIn = -1;
+        bestDelta = 0;
+        for (int out : chosenSets) {
+            load(out);
+            for (int c = 0; c < nCandidates; c++) {
+                int in = candidates[c];
+                if (chosenSets.contains(in)) {
+                    continue;
+                }
+                int delta = delta(in);
+                if (delta > bestDelta) {
+                    bestDelta = delta;
+                    bestOut = out;
+                    bestIn = in;
+                    if (firstImprovement) {
+                        unload();
+                        return true;
+                    }
+                }
+            }
+        }
+        unload();
+        return bestOut != -1;
+    }
+
+    /**
+     * @return set removed by the best swap found, -1 if none
+     */
+    public int bestOut() {
+        return bestOut;
+    }
+
+    /**
+     * @return set added by the best swap found, -1 if none
+     */
+    public int bestIn() {
+        return bestIn;
+    }
+
+    /**
+     * @return coverage change of the best swap found
+     */
+    public int bestDelta() {
+        return bestDelta;
+    }
+
+    private void update(int set, int sign) {
+        var instance = solution.getInstance();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] weights = instance.getPointWeights();
+        int[] coverCount = solution.getCoverCount();
+        for (int i = setOffsets[set]; i < setOffsets[set + 1]; i++) {
+            int point = setPoints[i];
+            if (coverCount[point] == 1) {
+                int weight = sign * weights[point];
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    recovered[pointSets[j]] += weight;
+                }
+            }
+        }
+    }
+}
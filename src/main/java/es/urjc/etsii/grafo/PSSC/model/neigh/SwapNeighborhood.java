@@ -4,11 +4,10 @@ import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
 import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.Neighborhood;
-import es.urjc.etsii.grafo.util.collections.BitSet;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Neighborhood that explores swapping one set from the solution with one set not in the solution.
@@ -24,71 +23,80 @@ public class SwapNeighborhood extends Neighborhood<SwapNeighborhood.SwapMove, PS
      * Explores all valid 'swap' moves from the current solution.
      * <p>
      * A swap move involves removing a 'setOut' from the solution and adding a 'setIn'.
-     * To be efficient, this method pre-calculates the change in coverage and only generates
-     * moves that are guaranteed to result in a feasible solution.
+     * The coverage after each swap is predicted in O(1), and only moves that result in a feasible solution are generated.
+     * <p>
+     * Only sets covering a point that is uncovered or covered only by 'setOut' are considered as 'setIn',
+     * found through the point to sets index. Any other set would leave the coverage of removing 'setOut' unchanged,
+     * so it is only feasible if 'setOut' could be dropped instead, which the Drop neighborhood already finds.
+     * <p>
+     * Moves are generated lazily while the returned stream is consumed, which must happen before the solution changes.
      *
      * @param sol The current solution.
-     * @return An ExploreResult containing a list of all possible valid SwapMoves.
+     * @return An ExploreResult containing all possible valid SwapMoves.
      */
     @Override
     public ExploreResult<SwapMove, PSSCSolution, PSSCInstance> explore(PSSCSolution sol) {
         PSSCInstance instance = sol.getInstance();
-        List<SwapMove> moves = new ArrayList<>();
 
         // Get data for efficient calculation
-        int nSets = instance.getnSets();
-        int[] coverCount = sol.getCoverCount();
-        int currentCoveredPoints = sol.coveredPoints().size();
         int minRequired = sol.minCoveredRequired();
-
         var chosenSets = sol.getChosenSets();
         var uselessSets = instance.getUselessSets();
+        int[] setOffsets = instance.getSetOffsets();
+        int[] setPoints = instance.getSetPoints();
+        int[] pointOffsets = instance.getPointOffsets();
+        int[] pointSets = instance.getPointSets();
+        int[] coverCount = sol.getCoverCount();
 
-        // Iterate through each set to potentially remove from the solution
-        for (int setOut : chosenSets) {
-            BitSet pointsInSetOut = instance.getCoveredPoints(setOut);
-
-            // Calculate how many points would become uncovered if we drop setOut
-            int newlyUncovered = 0;
-            for (int point : pointsInSetOut) {
-                if (coverCount[point] == 1) {
-                    newlyUncovered++;
+        // Sets covering an uncovered point are candidates for every 'setOut', and go first in the candidates buffer
+        int[] stamp = new int[instance.getnSets()];
+        int[] candidates = new int[instance.getnSets()];
+        int nTouchingUncovered = 0;
+        for (int i = 0; i < sol.getnUncoveredPoints(); i++) {
+            int point = sol.getUncoveredPoint(i);
+            for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                int set = pointSets[j];
+                if (stamp[set] == 0 && !uselessSets.contains(set)) {
+                    stamp[set] = 1;
+                    candidates[nTouchingUncovered++] = set;
                 }
             }
+        }
+        int nUncoveredCandidates = nTouchingUncovered;
 
-            // Iterate through each set to potentially add to the solution
-            for (int setIn = 0; setIn < nSets; setIn++) {
-                // A set can be added if it's not already chosen AND it's not useless
-                if (chosenSets.contains(setIn) || uselessSets.contains(setIn)) {
+        var evaluator = new SwapEvaluator(sol);
+        int[] chosen = new int[chosenSets.size()];
+        int nChosen = 0;
+        for (int set : chosenSets) {
+            chosen[nChosen++] = set;
+        }
+
+        // Iterate through each set to potentially remove from the solution
+        Stream<SwapMove> moves = IntStream.of(chosen).boxed().flatMap(setOut -> {
+            evaluator.load(setOut);
+            // Add the sets covering a point only 'setOut' covers after the ones covering uncovered points.
+            // The buffer is reused, as each 'setOut' is consumed before the next one is mapped.
+            int nCandidates = nUncoveredCandidates;
+            int currentStamp = setOut + 2;
+            for (int i = setOffsets[setOut]; i < setOffsets[setOut + 1]; i++) {
+                int point = setPoints[i];
+                if (coverCount[point] != 1) {
                     continue;
                 }
-
-                BitSet pointsInSetIn = instance.getCoveredPoints(setIn);
-                
-                // Calculate how many new points would be covered by adding setIn,
-                // considering that setOut has been removed.
-                int newlyCovered = 0;
-                for (int point : pointsInSetIn) {
-                    if (coverCount[point] == 0) {
-                        // This point was not covered at all, so it's a new contribution.
-                        newlyCovered++;
-                    } else if (coverCount[point] == 1 && pointsInSetOut.contains(point)) {
-                        // This point was only covered by setOut, which we are removing.
-                        // Adding setIn re-covers it, so it's a new contribution relative to the post-drop state.
-                        newlyCovered++;
+                for (int j = pointOffsets[point]; j < pointOffsets[point + 1]; j++) {
+                    int set = pointSets[j];
+                    if (stamp[set] != 1 && stamp[set] != currentStamp && !chosenSets.contains(set) && !uselessSets.contains(set)) {
+                        stamp[set] = currentStamp;
+                        candidates[nCandidates++] = set;
                     }
                 }
-
-                // Predict the new total coverage after the swap
-                int predictedCoverage = currentCoveredPoints - newlyUncovered + newlyCovered;
-
-                // Only create the move if the swap maintains feasibility
-                if (predictedCoverage >= minRequired) {
-                    moves.add(new SwapMove(sol, setOut, setIn));
-                }
             }
-        }
-        return ExploreResult.fromList(moves);
+            // Only create the move if the swap maintains feasibility
+            return IntStream.of(candidates).limit(nCandidates)
+                    .filter(setIn -> evaluator.coveredAfter(setIn) >= minRequired)
+                    .mapToObj(setIn -> new SwapMove(sol, setOut, setIn));
+        });
+        return ExploreResult.fromStream(moves);
     }
 
     /**
@@ -0,0 +1,84 @@
+package es.urjc.etsii.grafo.PSSC.constructives;
+
+import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive.GreedyMode;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstanceReducer;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BUCKET does not break ties by set id, so instead of the sets chosen by SCAN, each set it adds must have the maximum gain
+ * SCAN would find in the same solution.
+ */
+class GainBucketQueueTest {
+
+    @Test
+    void alwaysAddsASetWithTheMaximumGain() {
+        for (long seed = 0; seed < 10; seed++) {
+            var instance = TestInstances.sparse(seed, 60, 120, 6);
+            assertGreedySequence(instance, "seed " + seed);
+            assertGreedySequence(PSSCInstanceReducer.reduce(instance), "reduced seed " + seed);
+        }
+    }
+
+    @Test
+    void buildsAGreedyFeasibleSolution() {
+        for (long seed = 0; seed < 10; seed++) {
+            var instance = TestInstances.sparse(seed, 80, 100, 8);
+            var scan = new PSSCSolution(instance);
+            PSSCGreedyConstructive.buildUntilFeasible(scan, GreedyMode.SCAN);
+            var bucket = new PSSCSolution(instance);
+            PSSCGreedyConstructive.buildUntilFeasible(bucket, GreedyMode.BUCKET);
+            String context = "seed " + seed;
+            assertEquals(scan.isCovered(), bucket.isCovered(), context);
+
+            // The same sets as that many greedy steps, stopping at the first feasible one
+            int size = bucket.getChosenSets().size();
+            var steps = new PSSCSolution(instance);
+            PSSCGreedyConstructive.addNBestGreedySets(steps, size, GreedyMode.BUCKET);
+            assertArrayEquals(TestInstances.chosen(steps), TestInstances.chosen(bucket), context);
+            if (bucket.isCovered()) {
+                var fewer = new PSSCSolution(instance);
+                PSSCGreedyConstructive.addNBestGreedySets(fewer, size - 1, GreedyMode.BUCKET);
+                assertFalse(fewer.isCovered(), context);
+            }
+        }
+    }
+
+    /**
+     * Replay the greedy steps one at a time, checking that each added set has the maximum gain over the sets not chosen
+     * yet, and that each run extends the previous one
+     */
+    private static void assertGreedySequence(PSSCInstance instance, String context) {
+        int steps = TestInstances.usefulSets(instance).length;
+        int[] previous = new int[0];
+        for (int n = 1; n <= steps; n++) {
+            var bucket = new PSSCSolution(instance);
+            PSSCGreedyConstructive.addNBestGreedySets(bucket, n, GreedyMode.BUCKET);
+            int[] chosen = TestInstances.chosen(bucket);
+            assertEquals(n, chosen.length, context);
+
+            var before = TestInstances.solution(instance, previous);
+            int added = -1;
+            for (int set : chosen) {
+                if (!before.getChosenSets().contains(set)) {
+                    assertEquals(-1, added, context + ", " + n + " steps do not extend the previous run");
+                    added = set;
+                }
+            }
+            int maxGain = 0;
+            for (int set : TestInstances.candidates(before)) {
+                maxGain = Math.max(maxGain, before.getGain()[set]);
+            }
+            assertTrue(added >= 0, context);
+            assertEquals(maxGain, before.getGain()[added], context + ", step " + n + " added set " + added);
+            previous = chosen;
+        }
+    }
+}
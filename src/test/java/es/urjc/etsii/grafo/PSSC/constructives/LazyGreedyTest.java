@@ -0,0 +1,62 @@
+package es.urjc.etsii.grafo.PSSC.constructives;
+
+import es.urjc.etsii.grafo.PSSC.constructives.PSSCGreedyConstructive.GreedyMode;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstanceReducer;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LazyGreedyTest {
+
+    @Test
+    void addsTheSameSetsAsScan() {
+        for (long seed = 0; seed < 10; seed++) {
+            var instance = TestInstances.sparse(seed, 60, 120, 6);
+            assertSameSequence(instance, "seed " + seed);
+            // Weighted points, with sets of the same gain but different sizes
+            assertSameSequence(PSSCInstanceReducer.reduce(instance), "reduced seed " + seed);
+        }
+    }
+
+    @Test
+    void buildsTheSameFeasibleSolutionAsScan() {
+        for (long seed = 0; seed < 10; seed++) {
+            var instance = TestInstances.sparse(seed, 80, 100, 8);
+            var scan = new PSSCSolution(instance);
+            PSSCGreedyConstructive.buildUntilFeasible(scan, GreedyMode.SCAN);
+            var lazy = new PSSCSolution(instance);
+            PSSCGreedyConstructive.buildUntilFeasible(lazy, GreedyMode.LAZY);
+            assertArrayEquals(TestInstances.chosen(scan), TestInstances.chosen(lazy), "seed " + seed);
+            assertEquals(scan.isCovered(), lazy.isCovered(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void continuesFromAPartialSolution() {
+        var instance = TestInstances.sparse(42, 60, 120, 6);
+        var scan = TestInstances.solution(instance, 3, 17, 29);
+        var lazy = TestInstances.solution(instance, 3, 17, 29);
+        PSSCGreedyConstructive.addNBestGreedySets(scan, 10, GreedyMode.SCAN);
+        PSSCGreedyConstructive.addNBestGreedySets(lazy, 10, GreedyMode.LAZY);
+        assertArrayEquals(TestInstances.chosen(scan), TestInstances.chosen(lazy));
+    }
+
+    /**
+     * Compare the sets chosen after each number of greedy steps, up to every useful set, so that the order they are added
+     * in must match too
+     */
+    private static void assertSameSequence(PSSCInstance instance, String context) {
+        int steps = TestInstances.usefulSets(instance).length;
+        for (int n = 1; n <= steps; n++) {
+            var scan = new PSSCSolution(instance);
+            PSSCGreedyConstructive.addNBestGreedySets(scan, n, GreedyMode.SCAN);
+            var lazy = new PSSCSolution(instance);
+            PSSCGreedyConstructive.addNBestGreedySets(lazy, n, GreedyMode.LAZY);
+            assertArrayEquals(TestInstances.chosen(scan), TestInstances.chosen(lazy), context + ", " + n + " steps");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package es.urjc.etsii.grafo.PSSC.io;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstance;
+import es.urjc.etsii.grafo.PSSC.model.PSSCInstanceReducer;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolutionValidator;
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import es.urjc.etsii.grafo.executors.WorkUnitResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PSSCSolutionExporterTest {
+
+    @Test
+    void reducedSolutionIsExportedWithOriginalSetIds() throws IOException {
+        var original = TestInstances.forced();
+        var reduced = PSSCInstanceReducer.reduce(original);
+        // Sets 1 and 3 of the original instance, plus set 0 fixed by the reduction
+        var solution = TestInstances.solution(reduced, 0, 2);
+        assertTrue(solution.isCovered());
+
+        String[] lines = export(solution).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("3", lines[0]);
+        int[] exported = Arrays.stream(lines[1].trim().split(" ")).mapToInt(Integer::parseInt).toArray();
+        assertArrayEquals(new int[]{0, 1, 3}, exported);
+
+        // The exported sets are a feasible solution of the instance in the file
+        var originalSolution = TestInstances.solution(original, exported);
+        assertTrue(originalSolution.isCovered());
+        var validator = new PSSCSolutionValidator();
+        assertTrue(validator.validate(originalSolution).isValid());
+        assertTrue(validator.validate(solution).isValid());
+    }
+
+    @Test
+    void solutionOfUnreducedInstanceIsExportedAsIs() throws IOException {
+        var instance = TestInstances.tiny();
+        var solution = TestInstances.solution(instance, 8, 0, 3);
+        assertEquals("3\n0 3 8 ", export(solution));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String export(PSSCSolution solution) throws IOException {
+        WorkUnitResult<PSSCSolution, PSSCInstance> result = mock(WorkUnitResult.class);
+        when(result.solution()).thenReturn(solution);
+        var exporter = new PSSCSolutionExporter(new PSSCSolutionExporter.PSSCSolutionExporterConfig());
+        var text = new StringWriter();
+        try (var writer = new BufferedWriter(text)) {
+            exporter.export(writer, result);
+        }
+        return text.toString().replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,105 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PSSCInstanceCacheTest {
+
+    private static final long SIZE = 1234;
+    private static final long HASH = 5678;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void originalInstanceRoundTrip() throws IOException {
+        var instance = TestInstances.sparse(3, 50, 80, 5);
+        Path file = folder.resolve("sparse.bin");
+        PSSCInstanceCache.write(file, SIZE, HASH, instance);
+
+        var cached = PSSCInstanceCache.read(file, SIZE, HASH, instance.getId());
+        assertSameInstance(instance, cached);
+        assertNull(cached.getReduction());
+    }
+
+    @Test
+    void reducedInstanceRoundTrip() throws IOException {
+        var original = TestInstances.forced();
+        var reduced = PSSCInstanceReducer.reduce(original);
+        Path file = folder.resolve("forced.reduced.bin");
+        PSSCInstanceCache.writeReduced(file, SIZE, HASH, reduced);
+
+        var cached = PSSCInstanceCache.readReduced(file, SIZE, HASH, original);
+        assertSameInstance(reduced, cached);
+        assertSame(original, cached.getReduction().original());
+        assertArrayEquals(reduced.getReduction().originalSetIds(), cached.getReduction().originalSetIds());
+        assertArrayEquals(reduced.getFixedSets(), cached.getFixedSets());
+        assertArrayEquals(reduced.getPointWeights(), cached.getPointWeights());
+        assertEquals(reduced.getMinCoveredRequired(), cached.getMinCoveredRequired());
+    }
+
+    @Test
+    void unchangedReductionReturnsTheOriginal() throws IOException {
+        var original = TestInstances.instance("unchanged", 3, new int[][]{{0, 1}, {1, 2}, {2, 0}});
+        Path file = folder.resolve("unchanged.reduced.bin");
+        PSSCInstanceCache.writeReduced(file, SIZE, HASH, PSSCInstanceReducer.reduce(original));
+        assertSame(original, PSSCInstanceCache.readReduced(file, SIZE, HASH, original));
+    }
+
+    @Test
+    void staleOrBrokenCachesAreIgnored() throws IOException {
+        var original = TestInstances.forced();
+        Path file = folder.resolve("forced.bin");
+        Path reducedFile = folder.resolve("forced.reduced.bin");
+        PSSCInstanceCache.write(file, SIZE, HASH, original);
+        PSSCInstanceCache.writeReduced(reducedFile, SIZE, HASH, PSSCInstanceReducer.reduce(original));
+
+        assertNull(PSSCInstanceCache.read(file, SIZE + 1, HASH, "forced"));
+        assertNull(PSSCInstanceCache.read(file, SIZE, HASH + 1, "forced"));
+        assertNull(PSSCInstanceCache.readReduced(reducedFile, SIZE + 1, HASH, original));
+        assertNull(PSSCInstanceCache.readReduced(reducedFile, SIZE, HASH + 1, original));
+        assertNull(PSSCInstanceCache.read(folder.resolve("missing.bin"), SIZE, HASH, "missing"));
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+        assertNull(PSSCInstanceCache.read(file, SIZE, HASH, "forced"));
+        byte[] reducedBytes = Files.readAllBytes(reducedFile);
+        Files.write(reducedFile, Arrays.copyOf(reducedBytes, reducedBytes.length - 4));
+        assertNull(PSSCInstanceCache.readReduced(reducedFile, SIZE, HASH, original));
+    }
+
+    @Test
+    void editedSourceChangesItsHash() throws IOException {
+        // A cache is only reused for a source with the same size and hash, so any edit invalidates it
+        Path source = folder.resolve("instance.txt");
+        Files.writeString(source, "3 2\n1 1\n2 1 2\n1 2\n");
+        long hash = PSSCInstanceCache.contentHash(source);
+        assertEquals(hash, PSSCInstanceCache.contentHash(source));
+        Files.writeString(source, "3 2\n1 1\n2 1 3\n1 2\n");
+        assertNotEquals(hash, PSSCInstanceCache.contentHash(source));
+    }
+
+    private static void assertSameInstance(PSSCInstance expected, PSSCInstance actual) {
+        assertEquals(expected.getnSets(), actual.getnSets());
+        assertEquals(expected.getnPoints(), actual.getnPoints());
+        assertEquals(expected.getId(), actual.getId());
+        assertArrayEquals(expected.getSetOffsets(), actual.getSetOffsets());
+        assertArrayEquals(expected.getSetPoints(), actual.getSetPoints());
+        assertArrayEquals(expected.getPointOffsets(), actual.getPointOffsets());
+        assertArrayEquals(expected.getPointSets(), actual.getPointSets());
+        for (int set = 0; set < expected.getnSets(); set++) {
+            assertEquals(expected.getUselessSets().contains(set), actual.getUselessSets().contains(set), "set " + set);
+        }
+    }
+}
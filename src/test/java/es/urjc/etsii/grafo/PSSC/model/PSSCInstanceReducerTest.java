@@ -0,0 +1,117 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PSSCInstanceReducerTest {
+
+    @Test
+    void forcedSetIsFixed() {
+        var original = TestInstances.forced();
+        assertEquals(9, original.getMinCoveredRequired());
+        var reduced = PSSCInstanceReducer.reduce(original);
+
+        assertArrayEquals(new int[]{0}, reduced.getFixedSets());
+        assertArrayEquals(new int[]{1, 2, 3, 4}, reduced.getReduction().originalSetIds());
+        // Points 0, 1 and 2 are covered by the fixed set, the other 7 are left in 5 weighted points
+        assertEquals(5, reduced.getnPoints());
+        assertArrayEquals(new int[]{1, 2, 2, 1, 1}, reduced.getPointWeights());
+        assertEquals(6, reduced.getMinCoveredRequired());
+        assertSame(original, reduced.getReduction().original());
+    }
+
+    @Test
+    void pointsCoveredBySameSetsAreMerged() {
+        // No set is forced nor useless, points 0-1, 3-4, 5-7 and 8-9 are covered by the same sets
+        int[][] sets = {
+                {0, 1, 2, 3, 4},
+                {3, 4, 5, 6, 7},
+                {5, 6, 7, 8, 9},
+                {0, 1, 8, 9}
+        };
+        var original = TestInstances.instance("merged", 10, sets);
+        var reduced = PSSCInstanceReducer.reduce(original);
+
+        assertEquals(0, reduced.getFixedSets().length);
+        assertEquals(4, reduced.getnSets());
+        assertArrayEquals(new int[]{2, 1, 2, 3, 2}, reduced.getPointWeights());
+        // The requirement is still the original number of points, counted by weight
+        assertEquals(9, reduced.getMinCoveredRequired());
+        for (int set = 0; set < sets.length; set++) {
+            int weight = 0;
+            for (int point : reduced.getCoveredPoints(set)) {
+                weight += reduced.getPointWeights()[point];
+            }
+            assertEquals(sets[set].length, weight, "set " + set);
+        }
+    }
+
+    @Test
+    void uselessSetsAreRemoved() {
+        var reduced = PSSCInstanceReducer.reduce(TestInstances.tiny());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 8}, reduced.getReduction().originalSetIds());
+        assertEquals(12, reduced.getnPoints());
+        assertEquals(0, reduced.getFixedSets().length);
+    }
+
+    @Test
+    void unchangedInstanceIsReturnedAsIs() {
+        var original = TestInstances.instance("unchanged", 3, new int[][]{{0, 1}, {1, 2}, {2, 0}});
+        var reduced = PSSCInstanceReducer.reduce(original);
+        assertSame(original, reduced);
+        assertNull(reduced.getReduction());
+    }
+
+    @Test
+    void originalSetsCoverAsMuchAsTheReducedSolution() {
+        var validator = new PSSCSolutionValidator();
+        for (long seed = 0; seed < 20; seed++) {
+            var original = TestInstances.sparse(seed, 40, 60, 4);
+            var reduced = PSSCInstanceReducer.reduce(original);
+            int[] fixed = reduced.getFixedSets();
+            int fixedCovered = covered(original, fixed);
+            assertEquals(Math.max(0, original.getMinCoveredRequired() - fixedCovered), reduced.getMinCoveredRequired(), "seed " + seed);
+
+            var random = new SplittableRandom(seed);
+            for (int round = 0; round < 50; round++) {
+                var solution = new PSSCSolution(reduced);
+                double chance = random.nextDouble();
+                for (int set = 0; set < reduced.getnSets(); set++) {
+                    if (random.nextDouble() < chance) {
+                        solution.addSet(set);
+                    }
+                }
+                int[] originalSets = solution.getOriginalSets();
+                String context = "seed " + seed + ", sets " + Arrays.toString(originalSets);
+                assertEquals(covered(original, originalSets), fixedCovered + solution.getCoveredCount(), context);
+
+                var originalSolution = TestInstances.solution(original, originalSets);
+                assertEquals(originalSolution.isCovered(), solution.isCovered(), context);
+                assertEquals(solution.isCovered(), validator.validate(solution).isValid(), context);
+            }
+        }
+    }
+
+    /**
+     * Points of the original instance covered by the given sets, counting point by point
+     */
+    private static int covered(PSSCInstance original, int[] sets) {
+        int covered = 0;
+        for (int point = 0; point < original.getnPoints(); point++) {
+            for (int set : sets) {
+                if (original.getCoveredPoints(set).contains(point)) {
+                    covered++;
+                    break;
+                }
+            }
+        }
+        return covered;
+    }
+}
@@ -0,0 +1,138 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PSSCSolutionCheckpointTest {
+
+    @Test
+    void rollbackRestoresTheState() {
+        forEachStart((solution, random, context) -> {
+            int[] start = TestInstances.chosen(solution);
+            int checkpoint = solution.checkpoint();
+            change(solution, random, 10);
+            solution.rollback(checkpoint);
+            assertState(solution, start, context);
+        });
+    }
+
+    @Test
+    void commitKeepsTheChanges() {
+        forEachStart((solution, random, context) -> {
+            int checkpoint = solution.checkpoint();
+            change(solution, random, 10);
+            solution.commit(checkpoint);
+            int[] changed = TestInstances.chosen(solution);
+            assertState(solution, changed, context);
+
+            // Nothing is left recorded, a new checkpoint only undoes what follows it
+            int next = solution.checkpoint();
+            change(solution, random, 5);
+            solution.rollback(next);
+            assertState(solution, changed, context);
+        });
+    }
+
+    @Test
+    void nestedRollbacks() {
+        forEachStart((solution, random, context) -> {
+            int[] start = TestInstances.chosen(solution);
+            int outer = solution.checkpoint();
+            change(solution, random, 5);
+            int[] middle = TestInstances.chosen(solution);
+            int inner = solution.checkpoint();
+            change(solution, random, 5);
+            solution.rollback(inner);
+            assertState(solution, middle, context + ", inner rollback");
+            change(solution, random, 5);
+            solution.rollback(outer);
+            assertState(solution, start, context + ", outer rollback");
+        });
+    }
+
+    @Test
+    void outerRollbackUndoesCommittedInnerChanges() {
+        forEachStart((solution, random, context) -> {
+            int[] start = TestInstances.chosen(solution);
+            int outer = solution.checkpoint();
+            change(solution, random, 5);
+            int inner = solution.checkpoint();
+            change(solution, random, 5);
+            solution.commit(inner);
+            assertState(solution, TestInstances.chosen(solution), context + ", inner commit");
+            solution.rollback(outer);
+            assertState(solution, start, context + ", outer rollback");
+        });
+    }
+
+    @Test
+    void onlyTheInnermostCheckpointCanBeClosed() {
+        var solution = TestInstances.solution(TestInstances.tiny(), 0, 2);
+        assertThrows(IllegalStateException.class, () -> solution.commit(0));
+        int outer = solution.checkpoint();
+        solution.addSet(4);
+        int inner = solution.checkpoint();
+        solution.removeSet(0);
+        assertThrows(IllegalArgumentException.class, () -> solution.commit(outer));
+        assertThrows(IllegalArgumentException.class, () -> solution.rollback(outer));
+        solution.rollback(inner);
+        solution.commit(outer);
+        assertState(solution, new int[]{0, 2, 4}, "tiny");
+        assertThrows(IllegalStateException.class, () -> solution.rollback(outer));
+    }
+
+    private interface Check {
+        void run(PSSCSolution solution, SplittableRandom random, String context);
+    }
+
+    /**
+     * Run a check from several random starting solutions, on instances with and without point weights
+     */
+    private static void forEachStart(Check check) {
+        for (long seed = 0; seed < 5; seed++) {
+            var instance = TestInstances.sparse(seed, 60, 120, 6);
+            for (var current : new PSSCInstance[]{instance, PSSCInstanceReducer.reduce(instance)}) {
+                var random = new SplittableRandom(seed);
+                for (int round = 0; round < 20; round++) {
+                    var solution = new PSSCSolution(current);
+                    change(solution, random, 1 + random.nextInt(15));
+                    check.run(solution, random, "seed " + seed + ", " + current.getnSets() + " sets, round " + round);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add or remove random sets
+     */
+    private static void change(PSSCSolution solution, SplittableRandom random, int times) {
+        int nSets = solution.getInstance().getnSets();
+        for (int i = 0; i < times; i++) {
+            int set = random.nextInt(nSets);
+            if (solution.getChosenSets().contains(set)) {
+                solution.removeSet(set);
+            } else {
+                solution.addSet(set);
+            }
+        }
+    }
+
+    /**
+     * Compare every incrementally maintained array and count with a solution built from scratch with the given sets
+     */
+    private static void assertState(PSSCSolution solution, int[] sets, String context) {
+        var expected = TestInstances.solution(solution.getInstance(), sets);
+        assertArrayEquals(sets, TestInstances.chosen(solution), context);
+        assertEquals(expected.getCoveredCount(), solution.getCoveredCount(), context);
+        assertArrayEquals(expected.getCoverCount(), solution.getCoverCount(), context);
+        assertArrayEquals(expected.getGain(), solution.getGain(), context);
+        assertArrayEquals(expected.getUniqueCoverage(), solution.getUniqueCoverage(), context);
+        assertArrayEquals(expected.getWeakCoverage(), solution.getWeakCoverage(), context);
+        assertEquals(expected.isCovered(), solution.isCovered(), context);
+    }
+}
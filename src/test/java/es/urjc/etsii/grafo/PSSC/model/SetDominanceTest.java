@@ -0,0 +1,63 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetDominanceTest {
+
+    @Test
+    void tinyInstanceUselessSets() {
+        var instance = TestInstances.tiny();
+        var useless = instance.getUselessSets();
+        assertEquals(3, useless.size());
+        for (int set = 0; set < instance.getnSets(); set++) {
+            assertEquals(naiveUseless(instance, set), useless.contains(set), "set " + set);
+        }
+    }
+
+    @Test
+    void matchesPairwiseComparison() {
+        var random = new SplittableRandom(7);
+        for (int round = 0; round < 20; round++) {
+            int nSets = 30;
+            int nPoints = 16;
+            var coverage = new BitSet[nSets];
+            for (int s = 0; s < nSets; s++) {
+                coverage[s] = new BitSet(nPoints);
+                // Small sets over few points, so that duplicates and subsets are frequent
+                int size = random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    coverage[s].add(random.nextInt(nPoints));
+                }
+            }
+            var instance = new PSSCInstance(nSets, nPoints, coverage, "random" + round);
+            for (int set = 0; set < nSets; set++) {
+                assertEquals(naiveUseless(instance, set), instance.getUselessSets().contains(set), "round " + round + ", set " + set);
+            }
+        }
+    }
+
+    /**
+     * Empty, equal to a set with a lower id, or strictly contained in another set
+     */
+    private static boolean naiveUseless(PSSCInstance instance, int set) {
+        var points = instance.getCoveredPoints(set);
+        if (points.isEmpty()) {
+            return true;
+        }
+        for (int other = 0; other < instance.getnSets(); other++) {
+            var otherPoints = instance.getCoveredPoints(other);
+            if (other == set || !otherPoints.containsAll(points)) {
+                continue;
+            }
+            if (otherPoints.size() > points.size() || other < set) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,219 @@
+package es.urjc.etsii.grafo.PSSC.model;
+
+import es.urjc.etsii.grafo.util.collections.BitSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Small fixed instances and naive evaluations, to check incremental and pruned computations against them.
+ */
+public final class TestInstances {
+
+    /**
+     * Points covered by each set. Set 7 is strictly contained in set 0, set 9 duplicates set 1 and set 10 is empty.
+     */
+    private static final int[][] TINY = {
+            {0, 1, 2, 3},
+            {2, 3, 4, 5},
+            {4, 5, 6, 7},
+            {6, 7, 8, 9},
+            {8, 9, 10, 11},
+            {0, 5, 10},
+            {1, 6, 11},
+            {2, 3},
+            {3, 4, 9},
+            {2, 3, 4, 5},
+            {}
+    };
+
+    private static final int TINY_POINTS = 12;
+
+    /**
+     * 10 points, 9 required. Only set 0 covers points 0 and 1, so without it at most 8 points can be covered.
+     * Once set 0 is fixed, points 4 and 5 are both covered by sets 1 and 2 only, and points 6 and 7 by sets 2 and 3 only.
+     */
+    private static final int[][] FORCED = {
+            {0, 1, 2},
+            {2, 3, 4, 5},
+            {4, 5, 6, 7},
+            {6, 7, 8, 9},
+            {3, 8}
+    };
+
+    private static final int FORCED_POINTS = 10;
+
+    private TestInstances() {}
+
+    /**
+     * @return the tiny instance, not reduced
+     */
+    public static PSSCInstance tiny() {
+        return instance("tiny", TINY_POINTS, TINY);
+    }
+
+    /**
+     * @return an instance with a forced set and points that can be merged once it is fixed, not reduced
+     */
+    public static PSSCInstance forced() {
+        return instance("forced", FORCED_POINTS, FORCED);
+    }
+
+    /**
+     * @param sets points covered by each set
+     * @return the instance, not reduced
+     */
+    public static PSSCInstance instance(String name, int nPoints, int[][] sets) {
+        var coverage = new BitSet[sets.length];
+        for (int s = 0; s < sets.length; s++) {
+            coverage[s] = new BitSet(nPoints);
+            for (int point : sets[s]) {
+                coverage[s].add(point);
+            }
+        }
+        return new PSSCInstance(sets.length, nPoints, coverage, name);
+    }
+
+    /**
+     * Random instance with a fixed seed, where every set covers a few points
+     * @param seed seed of the random source
+     * @param setSize maximum number of points of each set
+     * @return the instance, not reduced
+     */
+    public static PSSCInstance sparse(long seed, int nSets, int nPoints, int setSize) {
+        var random = new SplittableRandom(seed);
+        var coverage = new BitSet[nSets];
+        for (int s = 0; s < nSets; s++) {
+            coverage[s] = new BitSet(nPoints);
+            for (int i = 0; i < setSize; i++) {
+                coverage[s].add(random.nextInt(nPoints));
+            }
+        }
+        return new PSSCInstance(nSets, nPoints, coverage, "sparse" + seed);
+    }
+
+    /**
+     * @return a solution with the given sets
+     */
+    public static PSSCSolution solution(PSSCInstance instance, int... sets) {
+        var solution = new PSSCSolution(instance);
+        for (int set : sets) {
+            solution.addSet(set);
+        }
+        solution.notifyUpdate();
+        return solution;
+    }
+
+    /**
+     * Every combination of k sets that are not useless, in lexicographic order
+     */
+    public static List<int[]> subsets(PSSCInstance instance, int k) {
+        var sets = usefulSets(instance);
+        var subsets = new ArrayList<int[]>();
+        addSubsets(sets, k, 0, new int[k], 0, subsets);
+        return subsets;
+    }
+
+    private static void addSubsets(int[] sets, int k, int from, int[] current, int size, List<int[]> subsets) {
+        if (size == k) {
+            subsets.add(current.clone());
+            return;
+        }
+        for (int i = from; i < sets.length; i++) {
+            current[size] = sets[i];
+            addSubsets(sets, k, i + 1, current, size + 1, subsets);
+        }
+    }
+
+    /**
+     * @return sets that are not useless, in ascending order
+     */
+    public static int[] usefulSets(PSSCInstance instance) {
+        var useless = instance.getUselessSets();
+        var sets = new ArrayList<Integer>();
+        for (int s = 0; s < instance.getnSets(); s++) {
+            if (!useless.contains(s)) {
+                sets.add(s);
+            }
+        }
+        return sets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return chosen sets of the solution, in ascending order
+     */
+    public static int[] chosen(PSSCSolution solution) {
+        return solution.getChosenSets().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @return sets that are neither chosen nor useless, in ascending order
+     */
+    public static int[] candidates(PSSCSolution solution) {
+        var chosenSets = solution.getChosenSets();
+        var candidates = new ArrayList<Integer>();
+        for (int set : usefulSets(solution.getInstance())) {
+            if (!chosenSets.contains(set)) {
+                candidates.add(set);
+            }
+        }
+        return candidates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Covered weight of the chosen sets after removing and adding the given ones, counting point by point
+     */
+    public static int coveredAfter(PSSCSolution solution, int[] removed, int[] added) {
+        var instance = solution.getInstance();
+        var sets = new ArrayList<Integer>();
+        for (int set : solution.getChosenSets()) {
+            if (!contains(removed, set)) {
+                sets.add(set);
+            }
+        }
+        for (int set : added) {
+            sets.add(set);
+        }
+        int covered = 0;
+        for (int point = 0; point < instance.getnPoints(); point++) {
+            for (int set : sets) {
+                if (instance.getCoveredPoints(set).contains(point)) {
+                    covered += instance.getPointWeights()[point];
+                    break;
+                }
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Weight of the points covered only by the given chosen set, counting point by point
+     */
+    public static int uniqueCoverage(PSSCSolution solution, int set) {
+        var instance = solution.getInstance();
+        int unique = 0;
+        for (int point : instance.getCoveredPoints(set)) {
+            boolean other = false;
+            for (int chosen : solution.getChosenSets()) {
+                if (chosen != set && instance.getCoveredPoints(chosen).contains(point)) {
+                    other = true;
+                    break;
+                }
+            }
+            if (!other) {
+                unique += instance.getPointWeights()[point];
+            }
+        }
+        return unique;
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int v : array) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
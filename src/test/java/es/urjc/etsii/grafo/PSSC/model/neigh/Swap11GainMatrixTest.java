@@ -0,0 +1,79 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Swap11GainMatrixTest {
+
+    @Test
+    void bestSwapMatchesNaiveAfterEachIncrementalSwap() {
+        var instance = TestInstances.tiny();
+        for (int k = 2; k <= 4; k++) {
+            for (int[] start : TestInstances.subsets(instance, k)) {
+                var solution = TestInstances.solution(instance, start);
+                var matrix = new Swap11GainMatrix(solution);
+                // A fixed sequence of swaps, improving or not, so that every check after the first one uses updated deltas
+                for (int step = 0; step < 6; step++) {
+                    int expected = naiveBestDelta(solution);
+                    assertEquals(expected > 0, matrix.findBest(), "start " + Arrays.toString(start) + ", step " + step);
+                    if (expected > 0) {
+                        assertEquals(expected, matrix.bestDelta());
+                        assertEquals(expected, delta(solution, matrix.bestOut(), matrix.bestIn()));
+                    }
+                    int[] chosen = TestInstances.chosen(solution);
+                    int[] candidates = TestInstances.candidates(solution);
+                    if (candidates.length == 0) {
+                        break;
+                    }
+                    matrix.swap(chosen[step % chosen.length], candidates[(3 * step) % candidates.length]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void bestSwapMatchesNaiveOnSparseInstance() {
+        // Few sets change their gain after each swap, so the deltas are updated instead of rebuilt
+        var instance = TestInstances.sparse(11, 120, 200, 4);
+        int[] useful = TestInstances.usefulSets(instance);
+        for (int first = 0; first < 5; first++) {
+            var solution = TestInstances.solution(instance, Arrays.copyOfRange(useful, 8 * first, 8 * first + 8));
+            var matrix = new Swap11GainMatrix(solution);
+            for (int step = 0; step < 30; step++) {
+                int expected = naiveBestDelta(solution);
+                assertEquals(expected > 0, matrix.findBest(), "first " + first + ", step " + step);
+                if (expected > 0) {
+                    assertEquals(expected, matrix.bestDelta());
+                    assertEquals(expected, delta(solution, matrix.bestOut(), matrix.bestIn()));
+                }
+                int[] chosen = TestInstances.chosen(solution);
+                int[] candidates = TestInstances.candidates(solution);
+                // Alternate improving and arbitrary swaps
+                if (expected > 0 && step % 2 == 0) {
+                    matrix.swap(matrix.bestOut(), matrix.bestIn());
+                } else {
+                    matrix.swap(chosen[(7 * step) % chosen.length], candidates[(13 * step) % candidates.length]);
+                }
+            }
+        }
+    }
+
+    private static int naiveBestDelta(PSSCSolution solution) {
+        int best = 0;
+        for (int out : TestInstances.chosen(solution)) {
+            for (int in : TestInstances.candidates(solution)) {
+                best = Math.max(best, delta(solution, out, in));
+            }
+        }
+        return best;
+    }
+
+    private static int delta(PSSCSolution solution, int out, int in) {
+        return TestInstances.coveredAfter(solution, new int[]{out}, new int[]{in}) - solution.getCoveredCount();
+    }
+}
@@ -0,0 +1,69 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.PSSCSolution;
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Swap22EvaluatorTest {
+
+    @Test
+    void bestSwapMatchesNaive() {
+        var instance = TestInstances.tiny();
+        for (int k = 2; k <= 4; k++) {
+            for (int[] start : TestInstances.subsets(instance, k)) {
+                var solution = TestInstances.solution(instance, start);
+                int[] candidates = TestInstances.candidates(solution);
+                var evaluator = new Swap22Evaluator(solution, candidates, candidates.length);
+                int expected = naiveBestDelta(solution, candidates);
+                assertEquals(expected > 0, evaluator.findBest(start, start.length, false, () -> false), "start " + Arrays.toString(start));
+                if (expected > 0) {
+                    assertEquals(expected, evaluator.bestDelta());
+                    assertEquals(expected, delta(solution, evaluator));
+                }
+            }
+        }
+    }
+
+    @Test
+    void firstImprovementIsImproving() {
+        var instance = TestInstances.tiny();
+        for (int[] start : TestInstances.subsets(instance, 3)) {
+            var solution = TestInstances.solution(instance, start);
+            int[] candidates = TestInstances.candidates(solution);
+            var evaluator = new Swap22Evaluator(solution, candidates, candidates.length);
+            boolean expected = naiveBestDelta(solution, candidates) > 0;
+            assertEquals(expected, evaluator.findBest(start, start.length, true, () -> false), "start " + Arrays.toString(start));
+            if (expected) {
+                assertTrue(evaluator.bestDelta() > 0);
+                assertEquals(evaluator.bestDelta(), delta(solution, evaluator));
+            }
+        }
+    }
+
+    private static int naiveBestDelta(PSSCSolution solution, int[] candidates) {
+        int[] chosen = TestInstances.chosen(solution);
+        int best = 0;
+        for (int i = 0; i < chosen.length; i++) {
+            for (int j = i + 1; j < chosen.length; j++) {
+                for (int k = 0; k < candidates.length; k++) {
+                    for (int l = k + 1; l < candidates.length; l++) {
+                        int covered = TestInstances.coveredAfter(solution, new int[]{chosen[i], chosen[j]}, new int[]{candidates[k], candidates[l]});
+                        best = Math.max(best, covered - solution.getCoveredCount());
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int delta(PSSCSolution solution, Swap22Evaluator evaluator) {
+        int[] out = {evaluator.bestOut1(), evaluator.bestOut2()};
+        int[] in = {evaluator.bestIn1(), evaluator.bestIn2()};
+        return TestInstances.coveredAfter(solution, out, in) - solution.getCoveredCount();
+    }
+}
@@ -0,0 +1,49 @@
+package es.urjc.etsii.grafo.PSSC.model.neigh;
+
+import es.urjc.etsii.grafo.PSSC.model.TestInstances;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SwapAndDropNeighborhoodTest {
+
+    @Test
+    void markChangedFindsEverySetWhoseUniqueCoverageChanged() {
+        var instance = TestInstances.tiny();
+        for (int k = 2; k <= 4; k++) {
+            for (int[] start : TestInstances.subsets(instance, k)) {
+                for (int out : start) {
+                    for (int in : TestInstances.candidates(TestInstances.solution(instance, start))) {
+                        var solution = TestInstances.solution(instance, start);
+                        int[] before = new int[instance.getnSets()];
+                        for (int set : start) {
+                            before[set] = TestInstances.uniqueCoverage(solution, set);
+                        }
+                        solution.removeSet(out);
+                        solution.addSet(in);
+
+                        int[] setStamp = new int[instance.getnSets()];
+                        int[] changed = new int[k];
+                        int nChanged = SwapAndDropNeighborhood.markChanged(solution, out, in, setStamp, new int[instance.getnPoints()], 1, changed);
+                        String swap = Arrays.toString(start) + " out " + out + " in " + in;
+                        for (int c = 0; c < nChanged; c++) {
+                            assertTrue(solution.getChosenSets().contains(changed[c]), swap);
+                            assertNotEquals(in, changed[c], swap);
+                            assertEquals(1, setStamp[changed[c]], swap);
+                        }
+                        // Sets left unmarked are assumed to keep their unique coverage
+                        for (int set : TestInstances.chosen(solution)) {
+                            if (set != in && setStamp[set] != 1) {
+                                assertEquals(before[set], TestInstances.uniqueCoverage(solution, set), swap + " set " + set);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}